@@ -0,0 +1,422 @@
+package com.github.kzwang.osem.apt;
+
+import com.github.kzwang.osem.annotations.Indexable;
+import com.github.kzwang.osem.annotations.IndexableComponent;
+import com.github.kzwang.osem.annotations.IndexableId;
+import com.github.kzwang.osem.annotations.IndexableProperties;
+import com.github.kzwang.osem.annotations.IndexableProperty;
+import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import com.github.kzwang.osem.processor.AnnotationMappings;
+import com.github.kzwang.osem.processor.DocumentKeyAccessor;
+import com.github.kzwang.osem.processor.GeneratedArtifacts;
+import org.elasticsearch.common.collect.Lists;
+import org.elasticsearch.common.collect.Maps;
+import org.elasticsearch.common.collect.Tuple;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Generate the mapping json and a reflection free {@link DocumentKeyAccessor} for each {@link Indexable} class.
+ * <p/>
+ * The mapping is written to the resource {@link GeneratedArtifacts#getMappingResourceName(String)}, the accessor
+ * is generated in the package of the class. Both are picked up by OSEM at runtime, classes which can't be
+ * processed get a warning and keep using runtime reflection.
+ */
+@SupportedAnnotationTypes("com.github.kzwang.osem.annotations.Indexable")
+public class OsemAnnotationProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Indexable.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            try {
+                writeMapping(type);
+            } catch (ElasticSearchOsemException e) {
+                warn(type, "Unable to generate OSEM mapping, runtime reflection will be used: " + e.getMessage());
+            }
+            try {
+                writeKeyAccessor(type);
+            } catch (ElasticSearchOsemException e) {
+                warn(type, "Unable to generate OSEM key accessor, runtime reflection will be used: " + e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    // ---- mapping
+
+    private void writeMapping(TypeElement type) {
+        Indexable indexable = type.getAnnotation(Indexable.class);
+
+        VariableElement idField = getIdField(type);
+        Map<String, Object> idMap = AnnotationMappings.getIndexableIdMap(idField.getAnnotation(IndexableId.class),
+                idField.getAnnotation(IndexableProperty.class), idField.getSimpleName().toString());
+
+        Map<String, Object> indexableMap = AnnotationMappings.getIndexableMap(indexable, getParentTypeName(indexable), idMap);
+        indexableMap.put("properties", getPropertiesMap(type));
+
+        Map<String, Object> mapping = Maps.newHashMap();
+        mapping.put(getIndexTypeName(type), indexableMap);
+
+        String resourceName = GeneratedArtifacts.getMappingResourceName(getBinaryName(type));
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", resourceName, type);
+            Writer writer = resource.openWriter();
+            try {
+                writer.write(AnnotationMappings.toJson(mapping));
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new ElasticSearchOsemException("Failed to write " + resourceName, e);
+        }
+    }
+
+    private Map<String, Object> getPropertiesMap(TypeElement type) {
+        Map<String, Object> propertiesMap = Maps.newHashMap();
+        List<VariableElement> fields = getAllFields(type);
+        List<ExecutableElement> methods = getAllMethods(type);
+
+        for (Element element : withAnnotation(fields, methods, IndexableProperty.class)) {
+            IndexableProperty indexableProperty = element.getAnnotation(IndexableProperty.class);
+            String fieldName = AnnotationMappings.getPropertyName(indexableProperty.name(), getJavaName(element), IndexableProperty.class);
+            Map<String, Object> fieldMap = AnnotationMappings.getIndexablePropertyMapping(indexableProperty, getSimpleName(getGenericType(element)));
+            if (fieldMap != null) {
+                propertiesMap.put(fieldName, fieldMap);
+            }
+        }
+
+        for (Element element : withAnnotation(fields, methods, IndexableComponent.class)) {
+            IndexableComponent indexableComponent = element.getAnnotation(IndexableComponent.class);
+            String fieldName = AnnotationMappings.getPropertyName(indexableComponent.name(), getJavaName(element), IndexableComponent.class);
+            TypeMirror componentType = getGenericType(element);
+            if (componentType.getKind() != TypeKind.DECLARED) {
+                throw new ElasticSearchOsemException("IndexableComponent " + fieldName + " must be a class");
+            }
+            Map<String, Object> properties = getPropertiesMap((TypeElement) ((DeclaredType) componentType).asElement());
+            propertiesMap.put(fieldName, AnnotationMappings.getIndexableComponentMapping(indexableComponent, properties));
+        }
+
+        for (Element element : withAnnotation(fields, methods, IndexableProperties.class)) {
+            Tuple<String, Map<String, Object>> mapping = AnnotationMappings.getIndexablePropertiesMapping(
+                    element.getAnnotation(IndexableProperties.class), getJavaName(element), getSimpleName(getGenericType(element)));
+            propertiesMap.put(mapping.v1(), mapping.v2());
+        }
+        return propertiesMap;
+    }
+
+    private String getParentTypeName(Indexable indexable) {
+        TypeMirror parentType;
+        try {
+            Class parentClass = indexable.parentClass();
+            if (parentClass == void.class) {
+                return null;
+            }
+            parentType = processingEnv.getElementUtils().getTypeElement(parentClass.getCanonicalName()).asType();
+        } catch (MirroredTypeException e) {
+            parentType = e.getTypeMirror();
+        }
+        if (parentType.getKind() != TypeKind.DECLARED) {
+            return null;  // void.class
+        }
+        return getIndexTypeName((TypeElement) ((DeclaredType) parentType).asElement());
+    }
+
+    private String getIndexTypeName(TypeElement type) {
+        return AnnotationMappings.getIndexTypeName(type.getSimpleName().toString(), type.getAnnotation(Indexable.class));
+    }
+
+    private VariableElement getIdField(TypeElement type) {
+        List<VariableElement> idFields = Lists.newArrayList();
+        for (VariableElement field : getAllFields(type)) {
+            if (field.getAnnotation(IndexableId.class) != null) {
+                idFields.add(field);
+            }
+        }
+        if (idFields.size() != 1) {
+            throw new ElasticSearchOsemException("Unable to find id field for class " + type.getSimpleName());
+        }
+        return idFields.get(0);
+    }
+
+    /**
+     * Same as runtime: element type of collections, the type itself otherwise
+     */
+    private TypeMirror getGenericType(Element element) {
+        TypeMirror type = element.getKind() == ElementKind.METHOD ? ((ExecutableElement) element).getReturnType() : element.asType();
+        TypeMirror collectionType = processingEnv.getTypeUtils().erasure(
+                processingEnv.getElementUtils().getTypeElement("java.util.Collection").asType());
+        if (type.getKind() == TypeKind.DECLARED && processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type), collectionType)) {
+            List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+            if (typeArguments.size() != 1) {
+                throw new ElasticSearchOsemException("Unable to find element type of " + element.getSimpleName());
+            }
+            return typeArguments.get(0);
+        }
+        return type;
+    }
+
+    /**
+     * Same as {@link Class#getSimpleName()} at runtime
+     */
+    private static String getSimpleName(TypeMirror type) {
+        switch (type.getKind()) {
+            case DECLARED:
+                return ((DeclaredType) type).asElement().getSimpleName().toString();
+            case ARRAY:
+                return getSimpleName(((ArrayType) type).getComponentType()) + "[]";
+            default:
+                if (type.getKind().isPrimitive()) {
+                    return type.getKind().toString().toLowerCase();
+                }
+                throw new ElasticSearchOsemException("Unsupported property type " + type);
+        }
+    }
+
+    private static String getJavaName(Element element) {
+        if (element.getKind() == ElementKind.FIELD) {
+            return element.getSimpleName().toString();
+        }
+        return null;
+    }
+
+    private static List<Element> withAnnotation(List<VariableElement> fields, List<ExecutableElement> methods,
+                                                Class<? extends Annotation> annotationType) {
+        List<Element> elements = Lists.newArrayList();
+        for (VariableElement field : fields) {
+            if (field.getAnnotation(annotationType) != null) {
+                elements.add(field);
+            }
+        }
+        for (ExecutableElement method : methods) {
+            if (method.getAnnotation(annotationType) != null) {
+                elements.add(method);
+            }
+        }
+        return elements;
+    }
+
+    // ---- key accessor
+
+    private void writeKeyAccessor(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.PRIVATE)) {
+            throw new ElasticSearchOsemException("class is private");
+        }
+        Indexable indexable = type.getAnnotation(Indexable.class);
+        String packageName = getPackage(type).getQualifiedName().toString();
+        String accessorName = GeneratedArtifacts.getKeyAccessorClassName(getBinaryName(type));
+        String accessorSimpleName = accessorName.substring(accessorName.lastIndexOf('.') + 1);
+
+        String idMethod = getIdMethodBody(type, packageName);
+        String routingMethod = getPathMethodBody(type, indexable.routingFieldPath(), packageName);
+        String parentMethod = getPathMethodBody(type, indexable.parentPath(), packageName);
+
+        StringBuilder source = new StringBuilder();
+        source.append("// Generated by ").append(OsemAnnotationProcessor.class.getName()).append(", do not edit\n");
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("public final class ").append(accessorSimpleName).append(" implements ")
+                .append(DocumentKeyAccessor.class.getName()).append(" {\n\n");
+        source.append("    @Override\n");
+        source.append("    public Object getId(Object object) {\n").append(idMethod).append("    }\n\n");
+        source.append("    @Override\n");
+        source.append("    public String getRouting(Object object) {\n").append(routingMethod).append("    }\n\n");
+        source.append("    @Override\n");
+        source.append("    public String getParent(Object object) {\n").append(parentMethod).append("    }\n\n");
+        source.append("}\n");
+
+        try {
+            JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(accessorName, type);
+            Writer writer = sourceFile.openWriter();
+            try {
+                writer.write(source.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new ElasticSearchOsemException("Failed to write " + accessorName, e);
+        }
+    }
+
+    private String getIdMethodBody(TypeElement type, String packageName) {
+        List<VariableElement> idFields = Lists.newArrayList();
+        for (VariableElement field : getAllFields(type)) {
+            if (field.getAnnotation(IndexableId.class) != null) {
+                idFields.add(field);
+            }
+        }
+        if (idFields.size() != 1) {
+            return "        throw new " + ElasticSearchOsemException.class.getName()
+                    + "(\"Can't find id field for class: " + type.getSimpleName() + "\");\n";
+        }
+        return "        return ((" + getTypeName(type.asType()) + ") object)" + getAccessExpression(type, idFields.get(0), packageName) + ";\n";
+    }
+
+    private String getPathMethodBody(TypeElement type, String path, String packageName) {
+        if (path.isEmpty()) {
+            return "        return null;\n";
+        }
+        StringBuilder body = new StringBuilder();
+        body.append("        ").append(getTypeName(type.asType())).append(" value0 = (").append(getTypeName(type.asType())).append(") object;\n");
+        TypeElement currentType = type;
+        String[] fieldNames = path.split("\\.");
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (currentType == null) {
+                throw new ElasticSearchOsemException("Unable to resolve path " + path);
+            }
+            VariableElement field = findField(currentType, fieldNames[i]);
+            if (field == null) {
+                throw new ElasticSearchOsemException("Unable to find field " + fieldNames[i] + " of path " + path);
+            }
+            boolean last = i == fieldNames.length - 1;
+            String valueType = last ? "Object" : getTypeName(field.asType());
+            body.append("        ").append(valueType).append(" value").append(i + 1).append(" = value").append(i)
+                    .append(getAccessExpression(currentType, field, packageName)).append(";\n");
+            if (!last) {
+                if (field.asType().getKind() != TypeKind.DECLARED) {
+                    throw new ElasticSearchOsemException("Field " + fieldNames[i] + " of path " + path + " is not an object");
+                }
+                body.append("        if (value").append(i + 1).append(" == null) return null;\n");
+                currentType = (TypeElement) ((DeclaredType) field.asType()).asElement();
+            }
+        }
+        body.append("        return value").append(fieldNames.length).append(" == null ? null : value")
+                .append(fieldNames.length).append(".toString();\n");
+        return body.toString();
+    }
+
+    /**
+     * Read the field directly like the reflection based {@code DocumentKeyPlan} does, so keys are the same whether the
+     * processor ran or not. A private field (or one not visible from the generated class) falls back to its plain
+     * getter, which must return the field value unchanged for routing to stay consistent
+     */
+    private String getAccessExpression(TypeElement type, VariableElement field, String packageName) {
+        String name = field.getSimpleName().toString();
+        if (isAccessible(field, packageName)) {
+            return "." + name;
+        }
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (ExecutableElement method : getAllMethods(type)) {
+            String methodName = method.getSimpleName().toString();
+            boolean getterName = methodName.equals("get" + capitalized)
+                    || (methodName.equals("is" + capitalized) && field.asType().getKind() == TypeKind.BOOLEAN);
+            if (getterName && method.getParameters().isEmpty() && !method.getModifiers().contains(Modifier.STATIC)
+                    && isAccessible(method, packageName)) {
+                return "." + methodName + "()";
+            }
+        }
+        throw new ElasticSearchOsemException("Field " + name + " is not accessible and has no accessible getter");
+    }
+
+    private boolean isAccessible(Element member, String packageName) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        return getPackage(member).getQualifiedName().contentEquals(packageName);
+    }
+
+    private String getTypeName(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    // ---- hierarchy
+
+    private VariableElement findField(TypeElement type, String name) {
+        for (VariableElement field : getAllFields(type)) {
+            if (field.getSimpleName().contentEquals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private List<VariableElement> getAllFields(TypeElement type) {
+        List<VariableElement> fields = Lists.newArrayList();
+        for (TypeElement current = type; current != null; current = getSuperclass(current)) {
+            fields.addAll(ElementFilter.fieldsIn(current.getEnclosedElements()));
+        }
+        return fields;
+    }
+
+    private List<ExecutableElement> getAllMethods(TypeElement type) {
+        List<ExecutableElement> methods = Lists.newArrayList();
+        addMethods(type, methods);
+        return methods;
+    }
+
+    private void addMethods(TypeElement type, List<ExecutableElement> methods) {
+        methods.addAll(ElementFilter.methodsIn(type.getEnclosedElements()));
+        TypeElement superclass = getSuperclass(type);
+        if (superclass != null) {
+            addMethods(superclass, methods);
+        }
+        for (TypeMirror interfaceType : type.getInterfaces()) {
+            addMethods((TypeElement) ((DeclaredType) interfaceType).asElement(), methods);
+        }
+    }
+
+    private TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement superElement = (TypeElement) ((DeclaredType) superclass).asElement();
+        if (superElement.getQualifiedName().contentEquals("java.lang.Object")) {
+            return null;
+        }
+        return superElement;
+    }
+
+    private PackageElement getPackage(Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element);
+    }
+
+    private String getBinaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private void warn(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.github.kzwang.osem.apt;
+
+
+import com.github.kzwang.osem.model.Tweet;
+import com.github.kzwang.osem.model.TweetComment;
+import com.github.kzwang.osem.processor.DocumentKeyAccessor;
+import com.github.kzwang.osem.processor.GeneratedArtifacts;
+import com.github.kzwang.osem.processor.MappingProcessor;
+import org.elasticsearch.common.base.Charsets;
+import org.elasticsearch.common.collect.Lists;
+import org.elasticsearch.common.io.FileSystemUtils;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+
+public class OsemAnnotationProcessorTest {
+
+    private static File outputDir;
+
+    @BeforeClass
+    public static void compileModels() throws IOException {
+        outputDir = File.createTempFile("osem-apt", "");
+        assertThat(outputDir.delete() && outputDir.mkdir(), equalTo(true));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, Charsets.UTF_8);
+        File[] sources = new File(System.getProperty("osem.model.sources")).listFiles();
+        List<String> options = Lists.newArrayList("-d", outputDir.getAbsolutePath(),
+                "-classpath", System.getProperty("java.class.path"),
+                "-processor", OsemAnnotationProcessor.class.getName());
+        Boolean success = compiler.getTask(null, fileManager, null, options, null, fileManager.getJavaFileObjects(sources)).call();
+        fileManager.close();
+        assertThat(success, equalTo(true));
+    }
+
+    @AfterClass
+    public static void cleanUp() {
+        FileSystemUtils.deleteRecursively(outputDir);
+    }
+
+    @Test
+    public void test_generated_mapping() throws IOException {
+        assertThat(readGeneratedMapping(Tweet.class), equalTo(MappingProcessor.getMapping(Tweet.class)));
+        assertThat(readGeneratedMapping(TweetComment.class), equalTo(MappingProcessor.getMapping(TweetComment.class)));
+    }
+
+    @Test
+    public void test_generated_key_accessor() throws Exception {
+        TweetComment comment = new TweetComment();
+        comment.setId(1l);
+        comment.setTweetId(2l);
+        DocumentKeyAccessor commentAccessor = loadKeyAccessor(TweetComment.class);
+        assertThat(commentAccessor.getId(comment), equalTo((Object) 1l));
+        assertThat(commentAccessor.getParent(comment), equalTo("2"));
+        assertThat(commentAccessor.getRouting(comment), nullValue());
+
+        Tweet tweet = new Tweet();
+        tweet.setId(3l);
+        DocumentKeyAccessor tweetAccessor = loadKeyAccessor(Tweet.class);
+        assertThat(tweetAccessor.getId(tweet), equalTo((Object) 3l));
+        assertThat(tweetAccessor.getParent(tweet), nullValue());
+    }
+
+    private Map<String, Object> readGeneratedMapping(Class clazz) throws IOException {
+        File mappingFile = new File(outputDir, GeneratedArtifacts.getMappingResourceName(clazz.getName()));
+        assertThat(mappingFile.exists(), equalTo(true));
+        byte[] mapping = Streams.copyToByteArray(mappingFile);
+        return XContentHelper.convertToMap(mapping, false).v2();
+    }
+
+    /**
+     * Load the generated accessor in a child class loader, model classes still come from the test class path
+     */
+    private DocumentKeyAccessor loadKeyAccessor(Class clazz) throws Exception {
+        URLClassLoader classLoader = new URLClassLoader(new URL[]{outputDir.toURI().toURL()}, getClass().getClassLoader());
+        Class<?> accessorClass = classLoader.loadClass(GeneratedArtifacts.getKeyAccessorClassName(clazz.getName()));
+        return (DocumentKeyAccessor) accessorClass.newInstance();
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.kzwang.osem.benchmark;
+
+import com.github.kzwang.osem.model.Tweet;
+import com.github.kzwang.osem.processor.ObjectProcessor;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Throughput of {@link Tweet} serialization with and without Afterburner. The properties of Tweet are private fields,
+ * which Afterburner can't optimize, so both variants use reflection and this only shows the cost of enabling it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AfterburnerBenchmark {
+
+    @Param({"false", "true"})
+    public boolean afterburner;
+
+    @Param({"SMALL", "LARGE"})
+    public Payloads.Size size;
+
+    private ObjectProcessor objectProcessor;
+
+    private Tweet tweet;
+
+    private BytesReference tweetBytes;
+
+    @Setup
+    public void setUp() {
+        objectProcessor = new ObjectProcessor(afterburner);
+        tweet = Payloads.tweet(size, 42);
+        tweetBytes = objectProcessor.toJsonBytes(tweet);
+    }
+
+    @Benchmark
+    public BytesReference toJsonBytes() {
+        return objectProcessor.toJsonBytes(tweet);
+    }
+
+    @Benchmark
+    public Tweet fromJsonBytes() {
+        return objectProcessor.fromJsonBytes(tweetBytes, Tweet.class);
+    }
+
+}
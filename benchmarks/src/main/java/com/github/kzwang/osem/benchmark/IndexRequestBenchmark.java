@@ -0,0 +1,83 @@
+package com.github.kzwang.osem.benchmark;
+
+import com.github.kzwang.osem.impl.ElasticSearchIndexerImpl;
+import com.github.kzwang.osem.model.Tweet;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.node.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.elasticsearch.node.NodeBuilder.nodeBuilder;
+
+
+/**
+ * Building index requests with {@link ElasticSearchIndexerImpl#getIndexRequest(Object)} against a local node,
+ * compared with a hand written XContentBuilder request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexRequestBenchmark {
+
+    private static final String INDEX_NAME = "benchmark";
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public Payloads.Size size;
+
+    private Node node;
+
+    private Client client;
+
+    private ElasticSearchIndexerImpl indexer;
+
+    private Tweet tweet;
+
+    @Setup
+    public void setUp() {
+        node = nodeBuilder().local(true).settings(ImmutableSettings.settingsBuilder()
+                .put("http.enabled", false)
+                .put("gateway.type", "none")
+                .put("index.store.type", "memory")).node();
+        client = node.client();
+        indexer = new ElasticSearchIndexerImpl(client, INDEX_NAME);
+        indexer.createIndex();
+        indexer.createMapping(Tweet.class);
+        client.admin().cluster().prepareHealth(INDEX_NAME).setWaitForYellowStatus().get();
+        tweet = Payloads.tweet(size, 42);
+    }
+
+    @TearDown
+    public void tearDown() {
+        node.close();
+    }
+
+    @Benchmark
+    public IndexRequestBuilder osemIndexRequest() {
+        return indexer.getIndexRequest(tweet);
+    }
+
+    @Benchmark
+    public IndexRequestBuilder rawIndexRequest() throws IOException {
+        return client.prepareIndex(INDEX_NAME, "tweetIndex", tweet.getId().toString())
+                .setSource(Payloads.rawTweet(tweet));
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.github.kzwang.osem.benchmark;
+
+import com.github.kzwang.osem.model.Tweet;
+import com.github.kzwang.osem.model.TweetComment;
+import com.github.kzwang.osem.processor.MappingProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Mapping generation of {@link MappingProcessor}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingProcessorBenchmark {
+
+    @Benchmark
+    public String tweetMappingAsJson() {
+        return MappingProcessor.getMappingAsJson(Tweet.class);
+    }
+
+    @Benchmark
+    public String tweetCommentMappingAsJson() {
+        return MappingProcessor.getMappingAsJson(TweetComment.class);
+    }
+
+    @Benchmark
+    public String indexTypeName() {
+        return MappingProcessor.getIndexTypeName(Tweet.class);
+    }
+
+}
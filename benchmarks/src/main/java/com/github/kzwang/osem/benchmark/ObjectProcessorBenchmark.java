@@ -0,0 +1,97 @@
+package com.github.kzwang.osem.benchmark;
+
+import com.github.kzwang.osem.model.Tweet;
+import com.github.kzwang.osem.model.TweetComment;
+import com.github.kzwang.osem.processor.ObjectProcessor;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Serialization and id/routing/parent extraction of {@link ObjectProcessor}, compared with a hand written
+ * XContentBuilder document
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectProcessorBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public Payloads.Size size;
+
+    private ObjectProcessor objectProcessor;
+
+    private Tweet tweet;
+
+    private TweetComment tweetComment;
+
+    private String tweetJson;
+
+    private BytesReference tweetBytes;
+
+    @Setup
+    public void setUp() {
+        objectProcessor = new ObjectProcessor();
+        tweet = Payloads.tweet(size, 42);
+        tweetComment = Payloads.tweetComment(size, 42);
+        tweetJson = objectProcessor.toJsonString(tweet);
+        tweetBytes = objectProcessor.toJsonBytes(tweet);
+    }
+
+    @Benchmark
+    public String toJsonString() {
+        return objectProcessor.toJsonString(tweet);
+    }
+
+    @Benchmark
+    public BytesReference toJsonBytes() {
+        return objectProcessor.toJsonBytes(tweet);
+    }
+
+    @Benchmark
+    public BytesReference rawXContentBuilder() throws IOException {
+        return Payloads.rawTweet(tweet).bytes();
+    }
+
+    @Benchmark
+    public Tweet fromJsonString() {
+        return objectProcessor.fromJsonString(tweetJson, Tweet.class);
+    }
+
+    @Benchmark
+    public Tweet fromJsonBytes() {
+        return objectProcessor.fromJsonBytes(tweetBytes, Tweet.class);
+    }
+
+    @Benchmark
+    public Object getIdValue() {
+        return objectProcessor.getIdValue(tweet);
+    }
+
+    @Benchmark
+    public String getRoutingId() {
+        return objectProcessor.getRoutingId(tweetComment);
+    }
+
+    @Benchmark
+    public String getParentId() {
+        return objectProcessor.getParentId(tweetComment);
+    }
+
+}
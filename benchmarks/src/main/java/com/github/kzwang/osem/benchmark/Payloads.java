@@ -0,0 +1,136 @@
+package com.github.kzwang.osem.benchmark;
+
+import com.github.kzwang.osem.model.Tweet;
+import com.github.kzwang.osem.model.TweetComment;
+import com.github.kzwang.osem.model.User;
+import org.elasticsearch.common.joda.FormatDateTimeFormatter;
+import org.elasticsearch.common.joda.Joda;
+import org.elasticsearch.common.joda.time.DateTime;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+
+
+/**
+ * Deterministic Tweet/User/TweetComment payloads of different sizes
+ */
+public final class Payloads {
+
+    /**
+     * Payload sizes used as benchmark parameter
+     */
+    public static enum Size {
+        SMALL(1, 1, 50),
+        MEDIUM(10, 10, 500),
+        LARGE(100, 50, 5000);
+
+        private final int users;
+
+        private final int listSize;
+
+        private final int textLength;
+
+        private Size(int users, int listSize, int textLength) {
+            this.users = users;
+            this.listSize = listSize;
+            this.textLength = textLength;
+        }
+    }
+
+    private static final FormatDateTimeFormatter TWEET_DATE_FORMAT = Joda.forPattern("basic_date||yyyy/MM/dd");
+
+    private static final FormatDateTimeFormatter TWEET_DATETIME_FORMAT = Joda.forPattern("yyyy/MM/dd HH:mm:ss");
+
+    private static final FormatDateTimeFormatter SPECIAL_DATE_FORMAT = Joda.forPattern("basic_date_time_no_millis");
+
+    private Payloads() {
+    }
+
+    public static Tweet tweet(Size size, long seed) {
+        Random random = new Random(seed);
+        Tweet tweet = new Tweet();
+        tweet.setId(random.nextLong());
+        tweet.setTweetDate(new Date(1388534400000L + random.nextInt()));
+        tweet.setTweetString(text(random, size.textLength));
+        tweet.setImage(text(random, size.textLength));
+        tweet.setFlagged(random.nextBoolean());
+        tweet.setUser(user(random, size.textLength));
+
+        List<String> urls = new ArrayList<String>(size.listSize);
+        List<Date> specialDates = new ArrayList<Date>(size.listSize);
+        for (int i = 0; i < size.listSize; i++) {
+            urls.add("http://example.com/" + text(random, 20));
+            specialDates.add(new Date(1388534400000L + random.nextInt()));
+        }
+        tweet.setUrls(urls);
+        tweet.setSpecialDates(specialDates);
+
+        List<User> mentionedUsers = new ArrayList<User>(size.users);
+        for (int i = 0; i < size.users; i++) {
+            mentionedUsers.add(user(random, size.textLength / 10));
+        }
+        tweet.setMentionedUserList(mentionedUsers);
+        return tweet;
+    }
+
+    public static TweetComment tweetComment(Size size, long seed) {
+        Random random = new Random(seed);
+        TweetComment comment = new TweetComment();
+        comment.setId(random.nextLong());
+        comment.setTweetId(random.nextLong());
+        comment.setComment(text(random, size.textLength));
+        return comment;
+    }
+
+    /**
+     * Write the same document OSEM produces for the tweet with a hand written {@link XContentBuilder},
+     * the baseline of OSEM overhead
+     */
+    public static XContentBuilder rawTweet(Tweet tweet) throws IOException {
+        XContentBuilder builder = jsonBuilder().startObject();
+        builder.field("id", tweet.getId());
+        rawUser(builder.startObject("user"), tweet.getUser()).endObject();
+        builder.field("tweetString", tweet.getTweetString());
+        builder.field("tweetDate", Joda.forPattern("basic_date||yyyy/MM/dd").printer().print(new DateTime(tweet.getTweetDate())));
+        builder.field("tweetDatetime", Joda.forPattern("yyyy/MM/dd HH:mm:ss").printer().print(new DateTime(tweet.getTweetDate())));
+        builder.field("image", tweet.getImage().toUpperCase().replaceAll("A", ""));
+        builder.field("urls", tweet.getUrls());
+        builder.startArray("mentionedUsers");
+        for (User user : tweet.getMentionedUserList()) {
+            rawUser(builder.startObject(), user).endObject();
+        }
+        builder.endArray();
+        builder.field("flagged", tweet.getFlagged());
+        builder.startArray("specialDates");
+        for (Date date : tweet.getSpecialDates()) {
+            builder.value(Joda.forPattern("basic_date_time_no_millis").printer().print(new DateTime(date)));
+        }
+        builder.endArray();
+        return builder.endObject();
+    }
+
+    private static XContentBuilder rawUser(XContentBuilder builder, User user) throws IOException {
+        return builder.field("userName", user.getUserName()).field("description", user.getDescription());
+    }
+
+    private static User user(Random random, int textLength) {
+        User user = new User();
+        user.setUserName(text(random, 10));
+        user.setDescription(text(random, Math.max(textLength, 10)));
+        return user;
+    }
+
+    private static String text(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
@@ -296,5 +296,26 @@ public @interface Indexable {
      */
     Class<? extends JsonSerializer> serializer() default JsonSerializer.class;
 
+    /**
+     * Keep a snapshot of objects read from ElasticSearch, so
+     * {@link com.github.kzwang.osem.api.ElasticSearchIndexer#updateChanged(Object)} only sends the changed properties
+     */
+    boolean dirtyTracking() default false;
+
+    /**
+     * Max number of documents kept in the in-process near cache of get by id, 0 to disable.
+     * See {@link com.github.kzwang.osem.cache.NearCache}
+     */
+    long nearCacheSize() default 0;
+
+    /**
+     * Max total source bytes kept in the near cache, 0 for no limit. Enables the near cache if set
+     */
+    long nearCacheMaxBytes() default 0;
+
+    /**
+     * Seconds a document stays in the near cache after it was read or written, 0 for no expiration
+     */
+    long nearCacheTtlSeconds() default 0;
 
 }
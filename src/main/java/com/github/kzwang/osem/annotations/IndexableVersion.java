@@ -0,0 +1,25 @@
+package com.github.kzwang.osem.annotations;
+
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Version field of the object, must be long or Long. It is not included in the json, it is set from get, multi get
+ * and search hits, sent with index, update and delete requests and set to the new version after a write.
+ * <p/>
+ * A null or 0 internal version is not sent, so new objects are indexed without version check.
+ *
+ * @see <a href="http://www.elasticsearch.org/guide/en/elasticsearch/reference/current/docs-index_.html#index-versioning">Versioning</a>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface IndexableVersion {
+    /**
+     * How the version is checked on write, external versions are not sent with update requests
+     */
+    VersionTypeEnum type() default VersionTypeEnum.INTERNAL;
+
+}
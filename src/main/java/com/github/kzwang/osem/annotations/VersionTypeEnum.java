@@ -0,0 +1,19 @@
+package com.github.kzwang.osem.annotations;
+
+
+/**
+ * How the version of {@link IndexableVersion} is checked on write
+ *
+ * @see <a href="http://www.elasticsearch.org/guide/en/elasticsearch/reference/current/docs-index_.html#index-versioning">Versioning</a>
+ */
+public enum VersionTypeEnum {
+    /**
+     * Version is managed by ElasticSearch, a write must carry the current version and increments it
+     */
+    INTERNAL,
+
+    /**
+     * Version is managed by the application, a write must carry a version higher than the current one
+     */
+    EXTERNAL
+}
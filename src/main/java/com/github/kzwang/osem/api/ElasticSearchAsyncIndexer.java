@@ -0,0 +1,112 @@
+package com.github.kzwang.osem.api;
+
+import com.github.kzwang.osem.impl.ElasticSearchIndexerImpl;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ListenableActionFuture;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.deletebyquery.DeleteByQueryResponse;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.common.inject.ImplementedBy;
+import org.elasticsearch.index.query.QueryBuilder;
+
+
+/**
+ * Non-blocking variant of {@link ElasticSearchIndexer}, requests are built from the objects on the calling thread
+ * and sent without waiting for the response. The mapping of a type not written yet is checked and put with
+ * non-blocking requests before the write is sent.
+ */
+@ImplementedBy(ElasticSearchIndexerImpl.class)
+public interface ElasticSearchAsyncIndexer {
+
+    /**
+     * Index an object
+     *
+     * @param object object to index
+     * @return future of the response from ElasticSearch
+     */
+    public ListenableActionFuture<IndexResponse> indexAsync(Object object);
+
+    /**
+     * Index an object
+     *
+     * @param object   object to index
+     * @param listener listener notified with the response from ElasticSearch
+     */
+    public void indexAsync(Object object, ActionListener<IndexResponse> listener);
+
+    /**
+     * Index an array of objects
+     * <p/>
+     * A version conflict only fails its item, see {@link ElasticSearchIndexer#bulkIndex(Object...)}.
+     *
+     * @param objects objects to index
+     * @return future of the response from ElasticSearch
+     */
+    public ListenableActionFuture<BulkResponse> bulkIndexAsync(Object... objects);
+
+    /**
+     * Index an array of objects
+     * <p/>
+     * A version conflict only fails its item, see {@link ElasticSearchIndexer#bulkIndex(Object...)}.
+     *
+     * @param listener listener notified with the response from ElasticSearch
+     * @param objects  objects to index
+     */
+    public void bulkIndexAsync(ActionListener<BulkResponse> listener, Object... objects);
+
+    /**
+     * Delete an object
+     *
+     * @param object object to delete
+     * @return future of the response from ElasticSearch
+     */
+    public ListenableActionFuture<DeleteResponse> deleteAsync(Object object);
+
+    /**
+     * Delete an object
+     *
+     * @param object   object to delete
+     * @param listener listener notified with the response from ElasticSearch
+     */
+    public void deleteAsync(Object object, ActionListener<DeleteResponse> listener);
+
+    /**
+     * Delete an array of objects
+     * <p/>
+     * A version conflict only fails its item, see {@link ElasticSearchIndexer#bulkDelete(Object...)}.
+     *
+     * @param objects objects to delete
+     * @return future of the response from ElasticSearch
+     */
+    public ListenableActionFuture<BulkResponse> bulkDeleteAsync(Object... objects);
+
+    /**
+     * Delete an array of objects
+     * <p/>
+     * A version conflict only fails its item, see {@link ElasticSearchIndexer#bulkDelete(Object...)}.
+     *
+     * @param listener listener notified with the response from ElasticSearch
+     * @param objects  objects to delete
+     */
+    public void bulkDeleteAsync(ActionListener<BulkResponse> listener, Object... objects);
+
+    /**
+     * Delete objects by query
+     *
+     * @param clazz        class of objects need to delete
+     * @param queryBuilder delete query
+     * @return future of the response from ElasticSearch
+     */
+    public ListenableActionFuture<DeleteByQueryResponse> deleteByQueryAsync(Class clazz, QueryBuilder queryBuilder);
+
+    /**
+     * Delete objects by query
+     *
+     * @param clazz        class of objects need to delete
+     * @param queryBuilder delete query
+     * @param listener     listener notified with the response from ElasticSearch
+     */
+    public void deleteByQueryAsync(Class clazz, QueryBuilder queryBuilder, ActionListener<DeleteByQueryResponse> listener);
+
+}
@@ -11,6 +11,7 @@ import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.deletebyquery.DeleteByQueryResponse;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.common.inject.ImplementedBy;
 import org.elasticsearch.index.query.QueryBuilder;
 
@@ -74,13 +75,53 @@ public interface ElasticSearchIndexer {
     public IndexResponse index(Object object);
 
     /**
-     * Index an array of objects
+     * Index an array of objects, the version of each written object is updated
+     * <p/>
+     * A version conflict only fails its item, the object keeps its version. Get the conflict of each item with
+     * {@link com.github.kzwang.osem.exception.OsemVersionConflictException#getConflict(org.elasticsearch.action.bulk.BulkItemResponse)},
+     * the item id is the position of the object among the non null objects.
      *
      * @param objects objects to index
      * @return response from ElasticSearch
      */
     public BulkResponse bulkIndex(Object... objects);
 
+    /**
+     * Update some properties of an object with a partial document, the other properties are not sent
+     *
+     * @param object        object to update
+     * @param propertyNames java field names or json names of the top level properties to update
+     * @return response from ElasticSearch
+     */
+    public UpdateResponse update(Object object, String... propertyNames);
+
+    /**
+     * Update some properties of an object, index the whole object if it doesn't exist
+     *
+     * @param object        object to update or index
+     * @param propertyNames java field names or json names of the top level properties to update
+     * @return response from ElasticSearch
+     */
+    public UpdateResponse upsert(Object object, String... propertyNames);
+
+    /**
+     * Update the properties changed since the object was read or indexed, the class must enable
+     * {@link com.github.kzwang.osem.annotations.Indexable#dirtyTracking()}. All properties are sent if the object
+     * has no snapshot.
+     *
+     * @param object object to update
+     * @return response from ElasticSearch, null if nothing changed
+     */
+    public UpdateResponse updateChanged(Object object);
+
+    /**
+     * Update an array of objects with their changed properties, see {@link #updateChanged(Object)}
+     *
+     * @param objects objects to update
+     * @return response from ElasticSearch
+     */
+    public BulkResponse bulkUpdate(Object... objects);
+
     /**
      * Delete an object
      *
@@ -91,6 +132,10 @@ public interface ElasticSearchIndexer {
 
     /**
      * Delete an array of objects
+     * <p/>
+     * A version conflict only fails its item, the object keeps its version. Get the conflict of each item with
+     * {@link com.github.kzwang.osem.exception.OsemVersionConflictException#getConflict(org.elasticsearch.action.bulk.BulkItemResponse)},
+     * the item id is the position of the object among the non null objects.
      *
      * @param objects objects to delete
      * @return response from ElasticSearch
@@ -1,13 +1,18 @@
 package com.github.kzwang.osem.api;
 
 import com.github.kzwang.osem.impl.ElasticSearchSearcherImpl;
+import com.github.kzwang.osem.processor.DocumentKey;
+import com.github.kzwang.osem.processor.SourceProjection;
+import com.github.kzwang.osem.rolling.RollingIndexPattern;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.inject.ImplementedBy;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 
+import java.util.Date;
 import java.util.List;
 
 
@@ -64,6 +69,55 @@ public interface ElasticSearchSearcher {
      */
     public <T> List<T> search(Class<T> clazz, SearchRequestBuilder requestBuilder);
 
+    /**
+     * Perform search in ElasticSearch, only fetch and convert the properties of the projection
+     *
+     * @param projection     properties to fetch and type to convert to
+     * @param requestBuilder SearchRequestBuilder, must get from {@link #getSearchRequestBuilder(Class[])}
+     * @return list of projected objects from search result
+     */
+    public <T> List<T> search(SourceProjection<T> projection, SearchRequestBuilder requestBuilder);
+
+    /**
+     * Perform search in ElasticSearch and convert hits to original object, keeping the metadata of each hit,
+     * total hits and timing
+     *
+     * @param clazz          class to search
+     * @param requestBuilder SearchRequestBuilder, must get from {@link #getSearchRequestBuilder(Class[])}
+     * @return objects with hit and search metadata
+     */
+    public <T> SearchResult<T> searchResult(Class<T> clazz, SearchRequestBuilder requestBuilder);
+
+    /**
+     * Perform search in ElasticSearch, only fetch and convert the properties of the projection, keeping the metadata
+     * of each hit, total hits and timing
+     *
+     * @param projection     properties to fetch and type to convert to
+     * @param requestBuilder SearchRequestBuilder, must get from {@link #getSearchRequestBuilder(Class[])}
+     * @return projected objects with hit and search metadata
+     */
+    public <T> SearchResult<T> searchResult(SourceProjection<T> projection, SearchRequestBuilder requestBuilder);
+
+    /**
+     * Scan all objects matching the query, objects are fetched lazily page by page
+     *
+     * @param clazz        class to search
+     * @param queryBuilder optional query builder
+     * @return iterator of objects, must be closed if not fully consumed
+     */
+    public <T> ScrollIterator<T> scroll(Class<T> clazz, @Nullable QueryBuilder queryBuilder);
+
+    /**
+     * Scan all objects matching the search request, objects are fetched lazily page by page
+     *
+     * @param clazz          class to search
+     * @param requestBuilder SearchRequestBuilder, must get from {@link #getSearchRequestBuilder(Class[])}
+     * @param keepAlive      how long the scroll context is kept alive between pages
+     * @param size           number of hits per shard for each page
+     * @return iterator of objects, must be closed if not fully consumed
+     */
+    public <T> ScrollIterator<T> scroll(Class<T> clazz, SearchRequestBuilder requestBuilder, TimeValue keepAlive, int size);
+
     /**
      * Get search request build and set the search types
      *
@@ -72,6 +126,17 @@ public interface ElasticSearchSearcher {
      */
     public SearchRequestBuilder getSearchRequestBuilder(Class... clazz);
 
+    /**
+     * Get search request builder on the rolling indices covering a time window, indices without data are ignored
+     *
+     * @param pattern naming pattern of the rolling indices
+     * @param from    start of the window, inclusive
+     * @param to      end of the window, inclusive
+     * @param clazz   array of classes to search
+     * @return SearchRequestBuilder
+     */
+    public SearchRequestBuilder getSearchRequestBuilder(RollingIndexPattern pattern, Date from, Date to, Class... clazz);
+
     /**
      * Get an object by id
      *
@@ -93,11 +158,55 @@ public interface ElasticSearchSearcher {
 
     /**
      * Get objects by id list
+     * <p/>
+     * Missing documents are skipped, so the result does not line up with the ids, use
+     * {@link #getByKeys(Class, List)} to get null for missing ones and to get routed documents. Like getByKeys it
+     * throws {@link com.github.kzwang.osem.exception.ElasticSearchOsemException} if the get of a document failed.
      *
      * @param clazz class of the objects
      * @param ids   id list of the ojects
-     * @return list of objects from ElasticSearch
+     * @return list of existing objects from ElasticSearch, missing ones are skipped
      */
     public <T> List<T> getByIds(Class<T> clazz, List<String> ids);
 
+    /**
+     * Get an object by id, only fetch and convert the properties of the projection
+     *
+     * @param projection properties to fetch and type to convert to
+     * @param id         id of the object
+     * @param routing    routing of the object
+     * @return projected object, null if not exist
+     */
+    public <T> T getById(SourceProjection<T> projection, String id, @Nullable String routing);
+
+    /**
+     * Get objects by id list, only fetch and convert the properties of the projection
+     * <p/>
+     * Missing documents are skipped, use {@link #getByKeys(SourceProjection, List)} to get null for missing ones.
+     * Throws {@link com.github.kzwang.osem.exception.ElasticSearchOsemException} if the get of a document failed.
+     *
+     * @param projection properties to fetch and type to convert to
+     * @param ids        id list of the objects
+     * @return list of existing projected objects, missing ones are skipped
+     */
+    public <T> List<T> getByIds(SourceProjection<T> projection, List<String> ids);
+
+    /**
+     * Get objects by id and routing, large key lists are split into several multi gets sent concurrently
+     *
+     * @param clazz class of the objects
+     * @param keys  id and routing of the objects, see {@link com.github.kzwang.osem.processor.ObjectProcessor#getDocumentKey(Object)}
+     * @return object of each key in input order, null if not exist
+     */
+    public <T> List<T> getByKeys(Class<T> clazz, List<DocumentKey> keys);
+
+    /**
+     * Get objects by id and routing, only fetch and convert the properties of the projection
+     *
+     * @param projection properties to fetch and type to convert to
+     * @param keys       id and routing of the objects
+     * @return projected object of each key in input order, null if not exist
+     */
+    public <T> List<T> getByKeys(SourceProjection<T> projection, List<DocumentKey> keys);
+
 }
@@ -0,0 +1,28 @@
+package com.github.kzwang.osem.api;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+
+/**
+ * Lazy iterator over the objects of a scroll search, pages are fetched from ElasticSearch as the iteration goes.
+ * <p/>
+ * The iterator can only be iterated once, {@link #iterator()} returns itself. The scroll context is cleared when
+ * all hits are consumed or when the iterator is closed, always close it if the iteration may stop early.
+ */
+public interface ScrollIterator<T> extends Iterator<T>, Iterable<T>, Closeable {
+
+    /**
+     * Get total number of hits of the search
+     *
+     * @return total hits
+     */
+    public long getTotalHits();
+
+    /**
+     * Stop the iteration and clear the scroll context
+     */
+    @Override
+    public void close();
+
+}
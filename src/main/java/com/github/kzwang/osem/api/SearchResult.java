@@ -0,0 +1,77 @@
+package com.github.kzwang.osem.api;
+
+import org.elasticsearch.search.highlight.HighlightField;
+
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Objects of a search with the metadata of each hit and of the whole search.
+ * <p/>
+ * Iterating the result iterates the objects in hit order.
+ */
+public interface SearchResult<T> extends Iterable<T> {
+
+    /**
+     * A converted object with the metadata of its hit
+     */
+    public interface Hit<T> {
+
+        public T getObject();
+
+        public String getIndex();
+
+        public String getType();
+
+        public String getId();
+
+        /**
+         * @return score of the hit, NaN if not scored
+         */
+        public float getScore();
+
+        /**
+         * @return version of the document, -1 if version was not requested
+         */
+        public long getVersion();
+
+        /**
+         * @return sort values of the hit, empty if not sorted
+         */
+        public Object[] getSortValues();
+
+        /**
+         * @return highlighted fields of the hit by field name, empty if not highlighted
+         */
+        public Map<String, HighlightField> getHighlightFields();
+    }
+
+    /**
+     * @return hits in order of the search response
+     */
+    public List<Hit<T>> getHits();
+
+    /**
+     * @return objects in order of the search response
+     */
+    public List<T> getObjects();
+
+    /**
+     * @return total number of hits matching the search, not only the returned ones
+     */
+    public long getTotalHits();
+
+    /**
+     * @return max score of the search, NaN if not scored
+     */
+    public float getMaxScore();
+
+    /**
+     * @return time ElasticSearch took to execute the search in milliseconds
+     */
+    public long getTookInMillis();
+
+    public boolean isTimedOut();
+
+}
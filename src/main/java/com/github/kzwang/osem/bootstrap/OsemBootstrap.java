@@ -0,0 +1,313 @@
+package com.github.kzwang.osem.bootstrap;
+
+import com.github.kzwang.osem.annotations.Indexable;
+import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import com.github.kzwang.osem.impl.ElasticSearchIndexerImpl;
+import com.github.kzwang.osem.impl.ElasticSearchSearcherImpl;
+import com.github.kzwang.osem.processor.MappingProcessor;
+import com.github.kzwang.osem.processor.ObjectProcessor;
+import com.github.kzwang.osem.processor.OsemContext;
+import org.elasticsearch.common.Preconditions;
+import org.elasticsearch.common.collect.Lists;
+import org.elasticsearch.common.collect.Maps;
+import org.elasticsearch.common.collect.Sets;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.reflections.Reflections;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Prepare all {@link Indexable} classes in some packages at startup, so the first requests don't pay for it.
+ * <p/>
+ * Mappings are generated and Jackson serializers/deserializers are built for all classes in parallel,
+ * then the mappings are checked against the server with a single request and missing ones are created.
+ */
+public class OsemBootstrap {
+
+    private static final ESLogger logger = Loggers.getLogger(OsemBootstrap.class);
+
+    /**
+     * Startup timing of a class
+     */
+    public static class ClassReport {
+
+        private final Class clazz;
+
+        private final String typeName;
+
+        private final TimeValue mappingTime;
+
+        private final TimeValue warmUpTime;
+
+        ClassReport(Class clazz, String typeName, TimeValue mappingTime, TimeValue warmUpTime) {
+            this.clazz = clazz;
+            this.typeName = typeName;
+            this.mappingTime = mappingTime;
+            this.warmUpTime = warmUpTime;
+        }
+
+        public Class getClazz() {
+            return clazz;
+        }
+
+        public String getTypeName() {
+            return typeName;
+        }
+
+        /**
+         * @return time spent generating the mapping
+         */
+        public TimeValue getMappingTime() {
+            return mappingTime;
+        }
+
+        /**
+         * @return time spent building serializers, deserializers and key accessors
+         */
+        public TimeValue getWarmUpTime() {
+            return warmUpTime;
+        }
+
+        @Override
+        public String toString() {
+            return clazz.getName() + " [" + typeName + "] mapping: " + mappingTime + ", warm up: " + warmUpTime;
+        }
+    }
+
+    /**
+     * Startup timing of the bootstrap
+     */
+    public static class Report {
+
+        private final List<ClassReport> classReports;
+
+        private final TimeValue scanTime;
+
+        private final TimeValue prepareTime;
+
+        private final TimeValue ensureMappingsTime;
+
+        Report(List<ClassReport> classReports, TimeValue scanTime, TimeValue prepareTime, TimeValue ensureMappingsTime) {
+            this.classReports = classReports;
+            this.scanTime = scanTime;
+            this.prepareTime = prepareTime;
+            this.ensureMappingsTime = ensureMappingsTime;
+        }
+
+        /**
+         * @return timing of each class, in the order of class names
+         */
+        public List<ClassReport> getClassReports() {
+            return classReports;
+        }
+
+        /**
+         * @return time spent scanning packages
+         */
+        public TimeValue getScanTime() {
+            return scanTime;
+        }
+
+        /**
+         * @return wall time of generating mappings and warming up all classes
+         */
+        public TimeValue getPrepareTime() {
+            return prepareTime;
+        }
+
+        /**
+         * @return time spent checking and creating mappings on the server
+         */
+        public TimeValue getEnsureMappingsTime() {
+            return ensureMappingsTime;
+        }
+    }
+
+    /**
+     * Builder for {@link OsemBootstrap}
+     */
+    public static class Builder {
+
+        private final ElasticSearchIndexerImpl indexer;
+
+        private final List<String> packages = Lists.newArrayList();
+
+        private final Set<ObjectProcessor> objectProcessors = Sets.newIdentityHashSet();
+
+        private int concurrency = Runtime.getRuntime().availableProcessors();
+
+        private boolean ensureMappings = true;
+
+        Builder(ElasticSearchIndexerImpl indexer) {
+            this.indexer = indexer;
+            this.objectProcessors.add(indexer.getObjectProcessor());
+        }
+
+        /**
+         * Add packages to scan for {@link Indexable} classes
+         */
+        public Builder addPackages(String... packages) {
+            Collections.addAll(this.packages, packages);
+            return this;
+        }
+
+        /**
+         * Also warm up the deserializers of the searcher, no-op if it shares the {@link OsemContext} of the indexer
+         */
+        public Builder addSearcher(ElasticSearchSearcherImpl searcher) {
+            objectProcessors.add(searcher.getObjectProcessor());
+            return this;
+        }
+
+        /**
+         * Number of threads used to prepare the classes. Defaults to number of processors
+         */
+        public Builder setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Check and create mappings on the server. Defaults to true
+         */
+        public Builder setEnsureMappings(boolean ensureMappings) {
+            this.ensureMappings = ensureMappings;
+            return this;
+        }
+
+        public OsemBootstrap build() {
+            Preconditions.checkArgument(!packages.isEmpty(), "Must have at least one package");
+            Preconditions.checkArgument(concurrency > 0, "concurrency must be positive");
+            return new OsemBootstrap(indexer, packages, objectProcessors, concurrency, ensureMappings);
+        }
+    }
+
+    /**
+     * Create builder for {@link OsemBootstrap}
+     *
+     * @param indexer indexer whose index gets the mappings
+     * @return builder
+     */
+    public static Builder builder(ElasticSearchIndexerImpl indexer) {
+        Preconditions.checkNotNull(indexer, "indexer must not be null");
+        return new Builder(indexer);
+    }
+
+    private final ElasticSearchIndexerImpl indexer;
+
+    private final List<String> packages;
+
+    private final Set<ObjectProcessor> objectProcessors;
+
+    private final int concurrency;
+
+    private final boolean ensureMappings;
+
+    OsemBootstrap(ElasticSearchIndexerImpl indexer, List<String> packages, Set<ObjectProcessor> objectProcessors,
+                  int concurrency, boolean ensureMappings) {
+        this.indexer = indexer;
+        this.packages = packages;
+        this.objectProcessors = objectProcessors;
+        this.concurrency = concurrency;
+        this.ensureMappings = ensureMappings;
+    }
+
+    /**
+     * Scan the packages and prepare all {@link Indexable} classes found
+     *
+     * @return startup timing
+     */
+    public Report run() {
+        long start = System.nanoTime();
+        List<Class> classes = scan();
+        TimeValue scanTime = elapsed(start);
+        logger.info("Found {} indexable classes in {} in {}", classes.size(), packages, scanTime);
+
+        start = System.nanoTime();
+        final Map<Class, String> mappings = Maps.newConcurrentMap();
+        List<ClassReport> classReports = prepare(classes, mappings);
+        TimeValue prepareTime = elapsed(start);
+
+        start = System.nanoTime();
+        if (ensureMappings) {
+            indexer.ensureMappings(mappings);
+        }
+        TimeValue ensureMappingsTime = elapsed(start);
+
+        for (ClassReport classReport : classReports) {
+            logger.info("Prepared {}", classReport);
+        }
+        logger.info("Prepared {} classes in {}, ensured mappings on index [{}] in {}",
+                classReports.size(), prepareTime, indexer.getIndexName(), ensureMappingsTime);
+        return new Report(classReports, scanTime, prepareTime, ensureMappingsTime);
+    }
+
+    private List<Class> scan() {
+        Reflections reflections = new Reflections(packages.toArray());
+        Set<Class<?>> annotated = reflections.getTypesAnnotatedWith(Indexable.class);
+        Map<String, Class> sorted = Maps.newTreeMap();
+        for (Class<?> clazz : annotated) {
+            if (clazz.isAnnotationPresent(Indexable.class)) {
+                sorted.put(clazz.getName(), clazz);
+            }
+        }
+        return Lists.newArrayList(sorted.values());
+    }
+
+    private List<ClassReport> prepare(List<Class> classes, final Map<Class, String> mappings) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, Math.max(classes.size(), 1)),
+                EsExecutors.daemonThreadFactory("osem_bootstrap"));
+        try {
+            List<Future<ClassReport>> futures = Lists.newArrayListWithCapacity(classes.size());
+            for (final Class clazz : classes) {
+                futures.add(executor.submit(new Callable<ClassReport>() {
+                    @Override
+                    public ClassReport call() throws Exception {
+                        long start = System.nanoTime();
+                        String typeName = MappingProcessor.getIndexTypeName(clazz);
+                        mappings.put(clazz, MappingProcessor.getMappingAsJson(clazz));
+                        TimeValue mappingTime = elapsed(start);
+
+                        start = System.nanoTime();
+                        for (ObjectProcessor objectProcessor : objectProcessors) {
+                            objectProcessor.warmUp(clazz);
+                        }
+                        return new ClassReport(clazz, typeName, mappingTime, elapsed(start));
+                    }
+                }));
+            }
+            List<ClassReport> classReports = Lists.newArrayListWithCapacity(classes.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    classReports.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    throw new ElasticSearchOsemException("Failed to prepare class: " + classes.get(i).getName(), e.getCause());
+                }
+            }
+            return classReports;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ElasticSearchOsemException("Interrupted while preparing classes", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static TimeValue elapsed(long startNanos) {
+        return new TimeValue(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+}
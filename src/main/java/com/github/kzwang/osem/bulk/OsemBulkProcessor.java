@@ -0,0 +1,438 @@
+package com.github.kzwang.osem.bulk;
+
+import com.github.kzwang.osem.cache.NearCache;
+import com.github.kzwang.osem.exception.OsemVersionConflictException;
+import com.github.kzwang.osem.impl.ElasticSearchIndexerImpl;
+import com.github.kzwang.osem.processor.ObjectProcessor;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.update.UpdateRequestBuilder;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Preconditions;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Accept objects one at a time and index/update/delete them in bulk, backed by {@link BulkProcessor}
+ * <p/>
+ * Bulk requests are flushed when the number of actions, the size in bytes or the flush interval is reached.
+ * Up to {@link Builder#setConcurrentRequests(int)} bulk requests can be in flight, adding more objects blocks
+ * until one of them completes. Failed items are reported to the {@link Listener} with the original object.
+ */
+public class OsemBulkProcessor implements Closeable {
+
+    private static final ESLogger logger = Loggers.getLogger(OsemBulkProcessor.class);
+
+    /**
+     * Listener for bulk execution
+     */
+    public static interface Listener {
+
+        /**
+         * Callback before the bulk is executed
+         *
+         * @param executionId id of the bulk execution
+         * @param objects     objects in the bulk, in request order
+         */
+        public void beforeBulk(long executionId, List<Object> objects);
+
+        /**
+         * Callback after a successful execution of bulk request, some items may still failed
+         *
+         * @param executionId id of the bulk execution
+         * @param response    response from ElasticSearch
+         * @param failures    failed items with the original objects, empty if all items succeeded
+         */
+        public void afterBulk(long executionId, BulkResponse response, List<ItemFailure> failures);
+
+        /**
+         * Callback after the whole bulk request failed
+         *
+         * @param executionId id of the bulk execution
+         * @param objects     objects in the bulk, in request order
+         * @param failure     cause of the failure
+         */
+        public void afterBulk(long executionId, List<Object> objects, Throwable failure);
+    }
+
+    /**
+     * A failed item in a bulk request
+     */
+    public static class ItemFailure {
+
+        private final Object object;
+
+        private final BulkItemResponse response;
+
+        ItemFailure(Object object, BulkItemResponse response) {
+            this.object = object;
+            this.response = response;
+        }
+
+        /**
+         * @return the original object of the failed item
+         */
+        public Object getObject() {
+            return object;
+        }
+
+        /**
+         * @return item response from ElasticSearch
+         */
+        public BulkItemResponse getResponse() {
+            return response;
+        }
+
+        /**
+         * @return version conflict of the item, null if the item failed for another reason
+         */
+        @Nullable
+        public OsemVersionConflictException getVersionConflict() {
+            return OsemVersionConflictException.getConflict(response);
+        }
+
+        /**
+         * @return failure message from ElasticSearch
+         */
+        public String getFailureMessage() {
+            return response.getFailureMessage();
+        }
+    }
+
+    /**
+     * Builder for {@link OsemBulkProcessor}
+     */
+    public static class Builder {
+
+        private final ElasticSearchIndexerImpl indexer;
+
+        private final Listener listener;
+
+        private String name;
+
+        private int concurrentRequests = 1;
+
+        private int bulkActions = 1000;
+
+        private ByteSizeValue bulkSize = new ByteSizeValue(5, ByteSizeUnit.MB);
+
+        private TimeValue flushInterval = null;
+
+        Builder(ElasticSearchIndexerImpl indexer, @Nullable Listener listener) {
+            this.indexer = indexer;
+            this.listener = listener;
+        }
+
+        /**
+         * Set the name of the processor, used for logging
+         */
+        public Builder setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Number of bulk requests allowed in flight, 0 means bulk requests are executed on the adding thread.
+         * Defaults to 1
+         */
+        public Builder setConcurrentRequests(int concurrentRequests) {
+            this.concurrentRequests = concurrentRequests;
+            return this;
+        }
+
+        /**
+         * Flush when the number of actions reaches this value, -1 to disable. Defaults to 1000
+         */
+        public Builder setBulkActions(int bulkActions) {
+            this.bulkActions = bulkActions;
+            return this;
+        }
+
+        /**
+         * Flush when the size of the actions reaches this value, -1 to disable. Defaults to 5mb
+         */
+        public Builder setBulkSize(ByteSizeValue bulkSize) {
+            this.bulkSize = bulkSize;
+            return this;
+        }
+
+        /**
+         * Flush pending actions every interval, null to disable. Defaults to null
+         */
+        public Builder setFlushInterval(@Nullable TimeValue flushInterval) {
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        public OsemBulkProcessor build() {
+            return new OsemBulkProcessor(indexer, listener, name, concurrentRequests, bulkActions, bulkSize, flushInterval);
+        }
+    }
+
+    /**
+     * Create builder for {@link OsemBulkProcessor}
+     *
+     * @param indexer  indexer used to build the requests
+     * @param listener optional listener for bulk execution, failures are logged if not set
+     * @return builder
+     */
+    public static Builder builder(ElasticSearchIndexerImpl indexer, @Nullable Listener listener) {
+        Preconditions.checkNotNull(indexer, "indexer must not be null");
+        return new Builder(indexer, listener);
+    }
+
+    private final ElasticSearchIndexerImpl indexer;
+
+    private final BulkProcessor bulkProcessor;
+
+    private final PayloadListener payloadListener;
+
+    OsemBulkProcessor(ElasticSearchIndexerImpl indexer, @Nullable Listener listener, @Nullable String name, int concurrentRequests,
+                      int bulkActions, ByteSizeValue bulkSize, @Nullable TimeValue flushInterval) {
+        this.indexer = indexer;
+        this.payloadListener = new PayloadListener(listener, indexer.getNearCache(), indexer.getObjectProcessor());
+        this.bulkProcessor = BulkProcessor.builder(indexer.getClient(), payloadListener)
+                .setName(name)
+                .setConcurrentRequests(concurrentRequests)
+                .setBulkActions(bulkActions)
+                .setBulkSize(bulkSize)
+                .setFlushInterval(flushInterval)
+                .build();
+    }
+
+    /**
+     * Add an object to index
+     *
+     * @param object object to index
+     * @return this processor
+     */
+    public OsemBulkProcessor index(Object object) {
+        bulkProcessor.add(indexer.getIndexRequest(object).request(), object);
+        return this;
+    }
+
+    /**
+     * Add an update of some properties of an object
+     *
+     * @param object        object to update
+     * @param propertyNames java field names or json names of the top level properties to update
+     * @return this processor
+     */
+    public OsemBulkProcessor update(Object object, String... propertyNames) {
+        bulkProcessor.add(indexer.getUpdateRequest(object, false, propertyNames).request(), object);
+        return this;
+    }
+
+    /**
+     * Add an update of the properties changed since the object was read or indexed, ignored if nothing changed.
+     * The snapshot of the object is refreshed once the item succeeded.
+     *
+     * @param object object to update
+     * @return this processor
+     */
+    public OsemBulkProcessor updateChanged(Object object) {
+        Tuple<UpdateRequestBuilder, BytesReference> updateRequest = indexer.getChangedUpdateRequestWithSource(object);
+        if (updateRequest.v1() != null) {
+            payloadListener.addSnapshot(updateRequest.v1().request(), updateRequest.v2());  // before add, it may execute the bulk
+            bulkProcessor.add(updateRequest.v1().request(), object);
+        }
+        return this;
+    }
+
+    /**
+     * Add an object to delete
+     *
+     * @param object object to delete
+     * @return this processor
+     */
+    public OsemBulkProcessor delete(Object object) {
+        bulkProcessor.add(indexer.getDeleteRequest(object).request(), object);
+        return this;
+    }
+
+    /**
+     * Flush pending actions, close the processor and wait for all bulk requests in flight to complete
+     */
+    @Override
+    public void close() {
+        bulkProcessor.close();
+        try {
+            payloadListener.awaitBulks(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flush pending actions, close the processor and wait up to timeout for bulk requests in flight to complete
+     *
+     * @param timeout max time to wait
+     * @param unit    unit of timeout
+     * @return true if all bulk requests completed, false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitClose(long timeout, TimeUnit unit) throws InterruptedException {
+        bulkProcessor.close();
+        return payloadListener.awaitBulks(unit.toMillis(timeout));
+    }
+
+
+    /**
+     * Map bulk items back to the objects added with them, keep the near cache and the version of the objects up to date
+     */
+    private static class PayloadListener implements BulkProcessor.Listener {
+
+        private final Listener listener;
+
+        private final NearCache nearCache;
+
+        private final ObjectProcessor objectProcessor;
+
+        private int inFlight;  // guarded by this
+
+        /**
+         * Source to keep as snapshot of each changed update request once it succeeded
+         */
+        private final Map<ActionRequest, BytesReference> snapshots = Collections.synchronizedMap(new IdentityHashMap<ActionRequest, BytesReference>());
+
+        PayloadListener(@Nullable Listener listener, NearCache nearCache, ObjectProcessor objectProcessor) {
+            this.listener = listener;
+            this.nearCache = nearCache;
+            this.objectProcessor = objectProcessor;
+        }
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+            synchronized (this) {
+                inFlight++;
+            }
+            if (listener != null) {
+                listener.beforeBulk(executionId, getObjects(request));
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            try {
+                handleResponse(executionId, request, response);
+            } finally {
+                bulkDone();
+            }
+        }
+
+        void addSnapshot(ActionRequest request, BytesReference source) {
+            snapshots.put(request, source);
+        }
+
+        private void handleResponse(long executionId, BulkRequest request, BulkResponse response) {
+            nearCache.onBulkResponse(request, response);
+            objectProcessor.setVersions(request, response);
+            updateSnapshots(request, response);
+            List<ItemFailure> failures = Collections.emptyList();
+            if (response.hasFailures()) {
+                failures = new ArrayList<ItemFailure>();
+                List<Object> payloads = request.payloads();
+                for (BulkItemResponse item : response.getItems()) {
+                    if (item.isFailed()) {
+                        Object object = payloads != null ? payloads.get(item.getItemId()) : null;
+                        failures.add(new ItemFailure(object, item));
+                    }
+                }
+            }
+            if (listener != null) {
+                listener.afterBulk(executionId, response, failures);
+            } else if (!failures.isEmpty()) {
+                logger.warn("Bulk execution [{}] has {} failed items: {}", executionId, failures.size(), response.buildFailureMessage());
+            }
+        }
+
+        /**
+         * Keep the sent source as snapshot of each successful changed update, like versions are applied
+         */
+        private void updateSnapshots(BulkRequest request, BulkResponse response) {
+            if (snapshots.isEmpty()) {
+                return;
+            }
+            List<Object> payloads = request.payloads();
+            for (BulkItemResponse item : response.getItems()) {
+                BytesReference source = snapshots.remove(request.requests().get(item.getItemId()));
+                if (source != null && !item.isFailed() && payloads != null && item.getItemId() < payloads.size()) {
+                    objectProcessor.getDirtyTracker().snapshot(payloads.get(item.getItemId()), source);
+                }
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+            for (ActionRequest itemRequest : request.requests()) {
+                snapshots.remove(itemRequest);
+            }
+            try {
+                if (listener != null) {
+                    listener.afterBulk(executionId, getObjects(request), failure);
+                } else {
+                    logger.error("Bulk execution [{}] failed", failure, executionId);
+                }
+            } finally {
+                bulkDone();
+            }
+        }
+
+        private synchronized void bulkDone() {
+            inFlight--;
+            notifyAll();
+        }
+
+        /**
+         * Wait until no bulk request is in flight
+         *
+         * @param timeoutMillis max time to wait
+         * @return true if no bulk request is in flight
+         */
+        synchronized boolean awaitBulks(long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            if (deadline < 0) {
+                deadline = Long.MAX_VALUE;  // overflow
+            }
+            while (inFlight > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+
+        private List<Object> getObjects(BulkRequest request) {
+            List<Object> payloads = request.payloads();
+            if (payloads == null) {
+                return Collections.emptyList();
+            }
+            List<Object> objects = new ArrayList<Object>(request.requests().size());
+            List<ActionRequest> requests = request.requests();
+            for (int i = 0; i < requests.size(); i++) {
+                objects.add(i < payloads.size() ? payloads.get(i) : null);
+            }
+            return objects;
+        }
+    }
+
+}
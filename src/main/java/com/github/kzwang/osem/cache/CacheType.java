@@ -4,5 +4,46 @@ package com.github.kzwang.osem.cache;
  * Type of caches
  */
 public enum CacheType {
-    MAPPING, ID_FIELD, INDEX_TYPE_NAME, ROUTING_PATH, PARENT_PATH
-}
\ No newline at end of file
+    MAPPING, CLASS_MODEL, DOCUMENT_KEY_PLAN, DATE_FORMATTER(1000),
+
+    /**
+     * @deprecated id field is part of {@link #CLASS_MODEL}, no longer filled
+     */
+    @Deprecated
+    ID_FIELD,
+
+    /**
+     * @deprecated index type name is part of {@link #CLASS_MODEL}, no longer filled
+     */
+    @Deprecated
+    INDEX_TYPE_NAME,
+
+    /**
+     * @deprecated routing path is part of {@link #CLASS_MODEL}, no longer filled
+     */
+    @Deprecated
+    ROUTING_PATH,
+
+    /**
+     * @deprecated parent path is part of {@link #CLASS_MODEL}, no longer filled
+     */
+    @Deprecated
+    PARENT_PATH;
+
+    private final long maximumSize;
+
+    private CacheType() {
+        this(-1);
+    }
+
+    private CacheType(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * @return maximum number of entries in the cache, -1 if unbounded
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+}
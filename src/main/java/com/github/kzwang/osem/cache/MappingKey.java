@@ -0,0 +1,49 @@
+package com.github.kzwang.osem.cache;
+
+/**
+ * Key of a mapping in {@link CacheType#MAPPING} cache, a type is only mapped within one index
+ */
+public final class MappingKey {
+
+    private final String indexName;
+
+    private final String typeName;
+
+    public MappingKey(String indexName, String typeName) {
+        this.indexName = indexName;
+        this.typeName = typeName;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        MappingKey that = (MappingKey) o;
+
+        if (indexName != null ? !indexName.equals(that.indexName) : that.indexName != null) return false;
+        if (typeName != null ? !typeName.equals(that.typeName) : that.typeName != null) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = indexName != null ? indexName.hashCode() : 0;
+        result = 31 * result + (typeName != null ? typeName.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + indexName + "][" + typeName + "]";
+    }
+}
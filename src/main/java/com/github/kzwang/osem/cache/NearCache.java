@@ -0,0 +1,303 @@
+package com.github.kzwang.osem.cache;
+
+import com.github.kzwang.osem.annotations.Indexable;
+import com.github.kzwang.osem.processor.OsemClassModel;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.cache.CacheStats;
+import org.elasticsearch.common.cache.Weigher;
+import org.elasticsearch.common.collect.Maps;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process cache of document sources in front of get by id, one cache per type whose class enables it with
+ * {@link Indexable#nearCacheSize()} or {@link Indexable#nearCacheMaxBytes()}.
+ * <p/>
+ * Sources are cached with their version, a cached document is only replaced by a newer version so a slow read can't
+ * overwrite a newer write. Writes through the indexers of the same {@link com.github.kzwang.osem.processor.OsemContext}
+ * cache the written documents, deletes leave a tombstone and partial updates invalidate. Documents changed by other
+ * processes are stale until {@link Indexable#nearCacheTtlSeconds()} expires.
+ * <p/>
+ * Documents are keyed by index, id and routing, so routed documents sharing an id are cached separately.
+ */
+public class NearCache {
+
+    /**
+     * Cached source and version of a document, source is null for a deleted document
+     */
+    public static final class Entry {
+
+        private final BytesReference source;
+
+        private final long version;
+
+        private Entry(@Nullable BytesReference source, long version) {
+            this.source = source;
+            this.version = version;
+        }
+
+        @Nullable
+        public BytesReference getSource() {
+            return source;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public boolean isDeleted() {
+            return source == null;
+        }
+    }
+
+    private static final class Key {
+
+        private final String indexName;
+
+        private final String id;
+
+        private final String routing;
+
+        private Key(String indexName, String id, @Nullable String routing) {
+            this.indexName = indexName;
+            this.id = id;
+            this.routing = routing;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return id.equals(key.id) && indexName.equals(key.indexName)
+                    && (routing != null ? routing.equals(key.routing) : key.routing == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 31 * indexName.hashCode() + id.hashCode();
+            return 31 * result + (routing != null ? routing.hashCode() : 0);
+        }
+    }
+
+    private static final Weigher<Key, Entry> SOURCE_WEIGHER = new Weigher<Key, Entry>() {
+        @Override
+        public int weigh(Key key, Entry entry) {
+            return entry.source != null ? entry.source.length() : 0;
+        }
+    };
+
+    private final ConcurrentMap<String, Cache<Key, Entry>> caches = Maps.newConcurrentMap();  // type name -> cache
+
+    /**
+     * @param clazz indexable class
+     * @return true if near cache is enabled for class
+     */
+    public boolean isEnabled(Class clazz) {
+        Indexable indexable = OsemClassModel.of(clazz).getIndexable();
+        return indexable != null && (indexable.nearCacheSize() > 0 || indexable.nearCacheMaxBytes() > 0);
+    }
+
+    @Nullable
+    private Cache<Key, Entry> getCache(Class clazz) {
+        if (!isEnabled(clazz)) {
+            return null;
+        }
+        OsemClassModel classModel = OsemClassModel.of(clazz);
+        Cache<Key, Entry> cache = caches.get(classModel.getIndexTypeName());
+        if (cache == null) {
+            cache = buildCache(classModel.getIndexable());
+            Cache<Key, Entry> existing = caches.putIfAbsent(classModel.getIndexTypeName(), cache);
+            if (existing != null) {
+                cache = existing;
+            }
+        }
+        return cache;
+    }
+
+    private static Cache<Key, Entry> buildCache(Indexable indexable) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+        if (indexable.nearCacheTtlSeconds() > 0) {
+            builder.expireAfterWrite(indexable.nearCacheTtlSeconds(), TimeUnit.SECONDS);
+        }
+        if (indexable.nearCacheMaxBytes() > 0) {
+            return builder.maximumWeight(indexable.nearCacheMaxBytes()).weigher(SOURCE_WEIGHER).build();
+        }
+        return builder.maximumSize(indexable.nearCacheSize()).build();
+    }
+
+    /**
+     * Get a cached document
+     *
+     * @param clazz     indexable class
+     * @param indexName index of the document
+     * @param id        id of the document
+     * @param routing   routing of the document, null if not routed
+     * @return cached entry, null if not cached or near cache not enabled
+     */
+    @Nullable
+    public Entry get(Class clazz, String indexName, String id, @Nullable String routing) {
+        Cache<Key, Entry> cache = getCache(clazz);
+        return cache != null ? cache.getIfPresent(new Key(indexName, id, routing)) : null;
+    }
+
+    /**
+     * Cache a document read from ElasticSearch, ignored if a newer version or a tombstone is cached
+     *
+     * @param clazz     indexable class
+     * @param indexName index of the document
+     * @param id        id of the document
+     * @param routing   routing of the document, null if not routed
+     * @param source    source of the document
+     * @param version   version of the document
+     */
+    public void putRead(Class clazz, String indexName, String id, @Nullable String routing, BytesReference source, long version) {
+        Cache<Key, Entry> cache = getCache(clazz);
+        if (cache != null) {
+            put(cache.asMap(), new Key(indexName, id, routing), new Entry(source.toBytesArray(), version), false);
+        }
+    }
+
+    /**
+     * Cache a document after it was indexed, ignored if a newer version is cached. The cache of the type exists once
+     * a get by id looked it up, so a read in flight always sees the written version.
+     */
+    public void onIndexed(String typeName, String indexName, String id, @Nullable String routing, BytesReference source, long version) {
+        Cache<Key, Entry> cache = caches.get(typeName);
+        if (cache != null) {
+            put(cache.asMap(), new Key(indexName, id, routing), new Entry(source.toBytesArray(), version), true);
+        }
+    }
+
+    /**
+     * Leave a tombstone for a deleted document, so get by id returns null without a round trip
+     */
+    public void onDeleted(String typeName, String indexName, String id, @Nullable String routing, long version) {
+        Cache<Key, Entry> cache = caches.get(typeName);
+        if (cache != null) {
+            cache.put(new Key(indexName, id, routing), new Entry(null, version));
+        }
+    }
+
+    /**
+     * Remove a document, e.g. after a partial update whose full source is unknown
+     */
+    public void invalidate(String typeName, String indexName, String id, @Nullable String routing) {
+        Cache<Key, Entry> cache = caches.get(typeName);
+        if (cache != null) {
+            cache.invalidate(new Key(indexName, id, routing));
+        }
+    }
+
+    /**
+     * Remove all documents of a type, e.g. after delete by query
+     */
+    public void invalidateAll(String typeName) {
+        Cache<Key, Entry> cache = caches.get(typeName);
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Remove all documents of all types
+     */
+    public void clear() {
+        for (Cache<Key, Entry> cache : caches.values()) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Get hit, miss and eviction statistics of the near cache of class
+     *
+     * @param clazz indexable class
+     * @return statistics, null if near cache not enabled
+     */
+    @Nullable
+    public CacheStats getStats(Class clazz) {
+        Cache<Key, Entry> cache = getCache(clazz);
+        return cache != null ? cache.stats() : null;
+    }
+
+    public void onIndexResponse(IndexRequest request, IndexResponse response) {
+        onIndexed(response.getType(), response.getIndex(), response.getId(), request.routing(), request.source(), response.getVersion());
+    }
+
+    public void onDeleteResponse(DeleteRequest request, DeleteResponse response) {
+        onDeleted(response.getType(), response.getIndex(), response.getId(), request.routing(), response.getVersion());
+    }
+
+    /**
+     * Apply the result of each item of a bulk request, failed items are invalidated
+     */
+    public void onBulkResponse(BulkRequest request, BulkResponse response) {
+        if (caches.isEmpty()) {
+            return;
+        }
+        List<ActionRequest> requests = request.requests();
+        for (BulkItemResponse item : response.getItems()) {
+            if (!caches.containsKey(item.getType())) {
+                continue;
+            }
+            ActionRequest itemRequest = requests.get(item.getItemId());
+            String routing = getRouting(itemRequest);
+            if (item.isFailed()) {
+                invalidate(item.getType(), item.getIndex(), item.getId(), routing);
+            } else if (itemRequest instanceof IndexRequest) {
+                onIndexed(item.getType(), item.getIndex(), item.getId(), routing, ((IndexRequest) itemRequest).source(), item.getVersion());
+            } else if ("delete".equals(item.getOpType())) {
+                onDeleted(item.getType(), item.getIndex(), item.getId(), routing, item.getVersion());
+            } else {
+                invalidate(item.getType(), item.getIndex(), item.getId(), routing);
+            }
+        }
+    }
+
+    @Nullable
+    private static String getRouting(ActionRequest request) {
+        if (request instanceof IndexRequest) {
+            return ((IndexRequest) request).routing();
+        } else if (request instanceof DeleteRequest) {
+            return ((DeleteRequest) request).routing();
+        } else if (request instanceof UpdateRequest) {
+            return ((UpdateRequest) request).routing();
+        }
+        return null;
+    }
+
+    /**
+     * Put entry unless the cached entry has the same or a newer version. A tombstone is only replaced by a write.
+     * <p/>
+     * Writes are put even if the document is not cached, otherwise a read started before the write and finished after
+     * it would cache the older version.
+     */
+    private static void put(ConcurrentMap<Key, Entry> map, Key key, Entry entry, boolean write) {
+        while (true) {
+            Entry existing = map.get(key);
+            if (existing == null) {
+                if (map.putIfAbsent(key, entry) == null) {
+                    return;
+                }
+            } else if (existing.isDeleted() ? !write : existing.version >= entry.version) {
+                return;
+            } else if (map.replace(key, existing, entry)) {
+                return;
+            }
+        }
+    }
+}
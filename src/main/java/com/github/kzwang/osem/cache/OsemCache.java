@@ -1,55 +1,111 @@
 package com.github.kzwang.osem.cache;
 
 
-import org.elasticsearch.common.collect.Maps;
+import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.util.concurrent.ExecutionError;
+import org.elasticsearch.common.util.concurrent.UncheckedExecutionException;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Cache mapping, fields etc.
+ * <p/>
+ * Each {@link CacheType} has its own concurrent sub-cache, all of them are created up front so reading from the
+ * cache never takes a lock. Use {@link #load(CacheType, Object, Callable)} to compute a missing value, the loader
+ * will only run once per key even when many threads ask for the same key at the same time.
  */
 public class OsemCache {
 
-    private static OsemCache instance = null;
+    private static final OsemCache instance = new OsemCache();
 
 
-    private HashMap<CacheType, HashMap<Object, Object>> cache = Maps.newHashMap();
+    private final Map<CacheType, Cache<Object, Object>> cache;
 
 
+    private OsemCache() {
+        Map<CacheType, Cache<Object, Object>> caches = new EnumMap<CacheType, Cache<Object, Object>>(CacheType.class);
+        for (CacheType cacheType : CacheType.values()) {
+            CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+            if (cacheType.getMaximumSize() > 0) {
+                builder.maximumSize(cacheType.getMaximumSize());
+            }
+            caches.put(cacheType, builder.build());
+        }
+        cache = Collections.unmodifiableMap(caches);
+    }
+
     /**
      * Get Singleton {@link OsemCache} cache instance
      *
      * @return instance
      */
     public static OsemCache getInstance() {
-        if (instance == null) {
-            instance = new OsemCache();
-        }
         return instance;
     }
 
-    public void putCache(CacheType cacheType, Object key, Object value) {
-        if (!cache.containsKey(cacheType)) {
-            cache.put(cacheType, Maps.newHashMap());
+    /**
+     * Get the typed sub-cache for cache type
+     *
+     * @param cacheType type of the cache
+     * @return sub-cache of the cache type
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> Cache<K, V> getSubCache(CacheType cacheType) {
+        return (Cache<K, V>) cache.get(cacheType);
+    }
+
+    /**
+     * Get value from cache, load it with loader if not exist
+     *
+     * @param cacheType type of the cache
+     * @param key       key of the value
+     * @param loader    loader used to compute the value if not exist, must not return null
+     * @return cached value
+     */
+    public <K, V> V load(CacheType cacheType, K key, Callable<? extends V> loader) {
+        Cache<K, V> subCache = getSubCache(cacheType);
+        try {
+            return subCache.get(key, loader);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (UncheckedExecutionException e) {
+            throw unwrap(e);
+        } catch (ExecutionError e) {
+            throw unwrap(e);
         }
+    }
+
+    public void putCache(CacheType cacheType, Object key, Object value) {
         cache.get(cacheType).put(key, value);
     }
 
     public boolean isExist(CacheType cacheType, Object key) {
-        return cache.containsKey(cacheType) && cache.get(cacheType).containsKey(key);
+        return cache.get(cacheType).getIfPresent(key) != null;
     }
 
     public Object getCache(CacheType cacheType, Object key) {
-        if (!cache.containsKey(cacheType)) {
-            return null;
-        }
-        return cache.get(cacheType).get(key);
+        return cache.get(cacheType).getIfPresent(key);
     }
 
     public void removeCache(CacheType cacheType, Object key) {
-        if (cache.containsKey(cacheType)) {
-            cache.get(cacheType).remove(key);
+        cache.get(cacheType).invalidate(key);
+    }
+
+    private RuntimeException unwrap(Throwable e) {
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
         }
+        return new ElasticSearchOsemException("Failed to load cache value", cause);
     }
 
 
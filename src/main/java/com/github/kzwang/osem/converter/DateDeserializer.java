@@ -12,12 +12,14 @@ import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
 import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
 import com.fasterxml.jackson.databind.introspect.Annotated;
 import com.fasterxml.jackson.databind.introspect.AnnotatedField;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
 import com.fasterxml.jackson.databind.introspect.AnnotatedMethod;
 import com.github.kzwang.osem.annotations.IndexableProperty;
-import org.elasticsearch.common.joda.Joda;
+import com.github.kzwang.osem.processor.OsemClassModel;
+import com.github.kzwang.osem.processor.OsemPropertyModel;
+import org.elasticsearch.common.joda.FormatDateTimeFormatter;
 
 import java.io.IOException;
-import java.util.Date;
 
 /**
  * Custom Data Deserializer use Joda to parse date
@@ -25,10 +27,15 @@ import java.util.Date;
 public class DateDeserializer extends StdScalarDeserializer<Object>
         implements ContextualDeserializer {
 
-    private String formatString;
+    private final FormatDateTimeFormatter formatter;
 
     public DateDeserializer() {
+        this(null);
+    }
+
+    protected DateDeserializer(FormatDateTimeFormatter formatter) {
         super(Object.class);
+        this.formatter = formatter;
     }
 
 
@@ -37,9 +44,10 @@ public class DateDeserializer extends StdScalarDeserializer<Object>
         if (property != null) {
             Annotated annotated = property.getMember();
             if (annotated instanceof AnnotatedField || annotated instanceof AnnotatedMethod) {
-                IndexableProperty indexableProperty = annotated.getAnnotation(IndexableProperty.class);
+                OsemPropertyModel propertyModel = OsemClassModel.findProperty(((AnnotatedMember) annotated).getMember());
+                IndexableProperty indexableProperty = propertyModel != null ? propertyModel.getIndexableProperty() : null;
                 if (indexableProperty != null && !indexableProperty.format().isEmpty()) {
-                    formatString = indexableProperty.format();
+                    return new DateDeserializer(DateFormatters.forPattern(indexableProperty.format()));
                 }
             }
         }
@@ -48,12 +56,12 @@ public class DateDeserializer extends StdScalarDeserializer<Object>
 
     @Override
     public Object deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException, JsonProcessingException {
-        if (formatString != null && !formatString.isEmpty() && jp.getCurrentToken() == JsonToken.VALUE_STRING) {
+        if (formatter != null && jp.getCurrentToken() == JsonToken.VALUE_STRING) {
             String str = jp.getText().trim();
             if (str.length() == 0) {
                 return null;
             }
-            return Joda.forPattern(formatString).parser().parseDateTime(str).toDate();
+            return formatter.parser().parseDateTime(str).toDate();
         }
         return super._parseDate(jp, ctxt);
     }
@@ -0,0 +1,32 @@
+package com.github.kzwang.osem.converter;
+
+import com.github.kzwang.osem.cache.CacheType;
+import com.github.kzwang.osem.cache.OsemCache;
+import org.elasticsearch.common.joda.FormatDateTimeFormatter;
+import org.elasticsearch.common.joda.Joda;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Compiled Joda date formatters, cached by pattern
+ */
+public final class DateFormatters {
+
+    private DateFormatters() {
+    }
+
+    /**
+     * Get the formatter for pattern, the formatter is thread safe and shared
+     *
+     * @param pattern date format pattern
+     * @return formatter for pattern
+     */
+    public static FormatDateTimeFormatter forPattern(final String pattern) {
+        return OsemCache.getInstance().load(CacheType.DATE_FORMATTER, pattern, new Callable<FormatDateTimeFormatter>() {
+            @Override
+            public FormatDateTimeFormatter call() throws Exception {
+                return Joda.forPattern(pattern);
+            }
+        });
+    }
+}
@@ -9,13 +9,15 @@ import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.introspect.Annotated;
 import com.fasterxml.jackson.databind.introspect.AnnotatedField;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
 import com.fasterxml.jackson.databind.introspect.AnnotatedMethod;
 import com.fasterxml.jackson.databind.ser.ContextualSerializer;
 import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
 import com.github.kzwang.osem.annotations.IndexableProperty;
-import org.elasticsearch.common.joda.Joda;
+import com.github.kzwang.osem.processor.OsemClassModel;
+import com.github.kzwang.osem.processor.OsemPropertyModel;
+import org.elasticsearch.common.joda.FormatDateTimeFormatter;
 import org.elasticsearch.common.joda.time.DateTime;
-import org.elasticsearch.common.joda.time.LocalDateTime;
 
 import java.io.IOException;
 import java.util.Date;
@@ -27,10 +29,15 @@ import java.util.Date;
 public class DateSerializer extends StdScalarSerializer<Date>
         implements ContextualSerializer {
 
-    private String formatString;
+    private final FormatDateTimeFormatter formatter;
 
     public DateSerializer() {
+        this(null);
+    }
+
+    protected DateSerializer(FormatDateTimeFormatter formatter) {
         super(Date.class);
+        this.formatter = formatter;
     }
 
 
@@ -39,9 +46,10 @@ public class DateSerializer extends StdScalarSerializer<Date>
         if (property != null) {
             Annotated annotated = property.getMember();
             if (annotated instanceof AnnotatedField || annotated instanceof AnnotatedMethod) {
-                IndexableProperty indexableProperty = annotated.getAnnotation(IndexableProperty.class);
+                OsemPropertyModel propertyModel = OsemClassModel.findProperty(((AnnotatedMember) annotated).getMember());
+                IndexableProperty indexableProperty = propertyModel != null ? propertyModel.getIndexableProperty() : null;
                 if (indexableProperty != null && !indexableProperty.format().isEmpty()) {
-                    formatString = indexableProperty.format();
+                    return new DateSerializer(DateFormatters.forPattern(indexableProperty.format()));
                 }
             }
         }
@@ -54,9 +62,8 @@ public class DateSerializer extends StdScalarSerializer<Date>
             jgen.writeNull();
             return;
         }
-        if (formatString != null && !formatString.isEmpty()) {
-            DateTime dateTime = new DateTime(value);
-            jgen.writeString(Joda.forPattern(formatString).printer().print(dateTime));
+        if (formatter != null) {
+            jgen.writeString(formatter.printer().print(new DateTime(value)));
         } else {
             provider.defaultSerializeDateValue(value, jgen);
         }
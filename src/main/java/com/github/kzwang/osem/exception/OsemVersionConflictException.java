@@ -0,0 +1,118 @@
+package com.github.kzwang.osem.exception;
+
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.index.engine.VersionConflictEngineException;
+import org.elasticsearch.rest.RestStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Write rejected because the version of the object doesn't match the version of the document
+ */
+public class OsemVersionConflictException extends ElasticSearchOsemException {
+
+    private final String index;
+
+    private final String type;
+
+    private final String id;
+
+    private final int itemId;
+
+    public OsemVersionConflictException(String index, String type, String id, int itemId, String message, Throwable cause) {
+        super(message, cause);
+        this.index = index;
+        this.type = type;
+        this.id = id;
+        this.itemId = itemId;
+    }
+
+    /**
+     * Convert a version conflict of a single request, other failures are returned as is
+     *
+     * @param e     failure of the request
+     * @param index index of the document
+     * @param type  type of the document
+     * @param id    id of the document
+     * @return version conflict exception, or the original failure
+     */
+    public static RuntimeException convert(RuntimeException e, String index, String type, String id) {
+        return (RuntimeException) convert((Throwable) e, index, type, id);
+    }
+
+    /**
+     * Convert a version conflict of a single async request, other failures are returned as is
+     *
+     * @param e     failure of the request
+     * @param index index of the document
+     * @param type  type of the document
+     * @param id    id of the document
+     * @return version conflict exception, or the original failure
+     */
+    public static Throwable convert(Throwable e, String index, String type, String id) {
+        Throwable cause = ExceptionsHelper.unwrapCause(e);
+        if (cause instanceof VersionConflictEngineException) {
+            return new OsemVersionConflictException(index, type, id, -1, cause.getMessage(), cause);
+        }
+        return e;
+    }
+
+    /**
+     * Get the version conflicts of a bulk response
+     *
+     * @param response bulk response
+     * @return version conflict of each conflicting item, empty if none
+     */
+    public static List<OsemVersionConflictException> getConflicts(BulkResponse response) {
+        if (!response.hasFailures()) {
+            return Collections.emptyList();
+        }
+        List<OsemVersionConflictException> conflicts = new ArrayList<OsemVersionConflictException>();
+        for (BulkItemResponse item : response.getItems()) {
+            OsemVersionConflictException conflict = getConflict(item);
+            if (conflict != null) {
+                conflicts.add(conflict);
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * Get the version conflict of a bulk item
+     *
+     * @param item bulk item response
+     * @return version conflict, null if the item didn't fail for a version conflict
+     */
+    public static OsemVersionConflictException getConflict(BulkItemResponse item) {
+        // creating an existing document is a conflict too, the failure message names the exception
+        if (!item.isFailed() || item.getFailure().getStatus() != RestStatus.CONFLICT
+                || !item.getFailureMessage().contains(VersionConflictEngineException.class.getSimpleName())) {
+            return null;
+        }
+        return new OsemVersionConflictException(item.getIndex(), item.getType(), item.getId(), item.getItemId(),
+                item.getFailureMessage(), null);
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return position of the item in the bulk request, -1 for single requests
+     */
+    public int getItemId() {
+        return itemId;
+    }
+}
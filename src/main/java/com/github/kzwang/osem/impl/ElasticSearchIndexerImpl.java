@@ -1,39 +1,67 @@
 package com.github.kzwang.osem.impl;
 
+import com.github.kzwang.osem.api.ElasticSearchAsyncIndexer;
 import com.github.kzwang.osem.api.ElasticSearchIndexer;
 import com.github.kzwang.osem.cache.CacheType;
+import com.github.kzwang.osem.cache.MappingKey;
+import com.github.kzwang.osem.cache.NearCache;
 import com.github.kzwang.osem.cache.OsemCache;
 import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import com.github.kzwang.osem.exception.OsemVersionConflictException;
 import com.github.kzwang.osem.processor.MappingProcessor;
 import com.github.kzwang.osem.processor.ObjectProcessor;
-import org.elasticsearch.action.admin.cluster.state.ClusterStateResponse;
+import com.github.kzwang.osem.processor.OsemClassModel;
+import com.github.kzwang.osem.processor.OsemContext;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.admin.indices.alias.IndicesAliasesResponse;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexResponse;
 import org.elasticsearch.action.admin.indices.mapping.delete.DeleteMappingResponse;
+import org.elasticsearch.action.admin.indices.mapping.get.GetMappingsResponse;
 import org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
 import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequestBuilder;
 import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.deletebyquery.DeleteByQueryRequestBuilder;
 import org.elasticsearch.action.deletebyquery.DeleteByQueryResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.update.UpdateRequestBuilder;
+import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.Client;
-import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
-import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Preconditions;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.collect.Lists;
+import org.elasticsearch.common.collect.Maps;
+import org.elasticsearch.common.collect.Sets;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.hppc.cursors.ObjectCursor;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.indices.IndexMissingException;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 
-public class ElasticSearchIndexerImpl implements ElasticSearchIndexer {
+public class ElasticSearchIndexerImpl implements ElasticSearchIndexer, ElasticSearchAsyncIndexer {
 
     private static final ESLogger logger = Loggers.getLogger(ElasticSearchIndexerImpl.class);
 
@@ -43,14 +71,28 @@ public class ElasticSearchIndexerImpl implements ElasticSearchIndexer {
 
     private ObjectProcessor objectProcessor;
 
+    private NearCache nearCache;
+
     private String indexName = null;
 
 
     public ElasticSearchIndexerImpl(Client client, String indexName) {
+        this(client, indexName, OsemContext.getInstance());
+    }
+
+    /**
+     * Create with the processor of the context, cheap as nothing is built per instance
+     *
+     * @param client    ElasticSearch client
+     * @param indexName name of the index
+     * @param context   OSEM context to share
+     */
+    public ElasticSearchIndexerImpl(Client client, String indexName, OsemContext context) {
         this.client = client;
         this.indexName = indexName;
         cache = OsemCache.getInstance();
-        objectProcessor = new ObjectProcessor();
+        objectProcessor = context.getObjectProcessor();
+        nearCache = context.getNearCache();
     }
 
     @Override
@@ -72,19 +114,22 @@ public class ElasticSearchIndexerImpl implements ElasticSearchIndexer {
     @Override
     public PutMappingResponse putMapping(Class clazz, String mapping) {
         String typeName = MappingProcessor.getIndexTypeName(clazz);
+        PutMappingResponse response = doPutMapping(clazz, typeName, mapping);
+        cache.putCache(CacheType.MAPPING, new MappingKey(getIndexName(), typeName), mapping);
+        return response;
 
-        if (logger.isDebugEnabled()) {
-            logger.debug("Put mapping for class: {}, type: {}, mapping: {}", clazz.getSimpleName(), typeName, mapping);
-        }
+    }
 
-        PutMappingResponse response = client.admin().indices().preparePutMapping(getIndexName()).setType(typeName).setSource(mapping).get();
+    private PutMappingResponse doPutMapping(Class clazz, String typeName, String mapping) {
+        return doPutMapping(getIndexName(), clazz, typeName, mapping);
+    }
 
-        if (!cache.isExist(CacheType.MAPPING, clazz)) {
-            cache.putCache(CacheType.MAPPING, clazz, mapping);
+    private PutMappingResponse doPutMapping(String indexName, Class clazz, String typeName, String mapping) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Put mapping for class: {}, type: {}, index: {}, mapping: {}", clazz.getSimpleName(), typeName, indexName, mapping);
         }
 
-        return response;
-
+        return client.admin().indices().preparePutMapping(indexName).setType(typeName).setSource(mapping).get();
     }
 
     @Override
@@ -97,7 +142,8 @@ public class ElasticSearchIndexerImpl implements ElasticSearchIndexer {
 
         if (client.admin().indices().prepareTypesExists(getIndexName()).setTypes(typeName).get().isExists()) {
             DeleteMappingResponse response = client.admin().indices().prepareDeleteMapping(getIndexName()).setType(typeName).get();
-            cache.removeCache(CacheType.MAPPING, clazz);
+            cache.removeCache(CacheType.MAPPING, new MappingKey(getIndexName(), typeName));
+            nearCache.invalidateAll(typeName);
             return response;
         }
 
@@ -106,22 +152,32 @@ public class ElasticSearchIndexerImpl implements ElasticSearchIndexer {
 
     @Override
     public String getMapping(Class clazz) {
+        return getMapping(getIndexName(), clazz);
+    }
+
+    private String getMapping(String indexName, Class clazz) {
         String typeName = MappingProcessor.getIndexTypeName(clazz);
         if (logger.isDebugEnabled()) {
-            logger.debug("Get mapping for class: {}, type: {}", clazz.getSimpleName(), typeName);
-        }
-        ClusterStateResponse response = client.admin().cluster().prepareState().setIndices(getIndexName()).get();
-        MetaData metaData = response.getState().metaData();
-        if (metaData.iterator().hasNext()) {
-            IndexMetaData indexMetaData = metaData.iterator().next();
-            for (ObjectCursor<MappingMetaData> cursor : indexMetaData.mappings().values()) {
-                MappingMetaData mappingMd = cursor.value;
-                if (mappingMd.type().equals(typeName)) {
-                    try {
-                        return mappingMd.source().string();
-                    } catch (IOException e) {
-                        logger.error("Failed convert mapping to string", e);
-                    }
+            logger.debug("Get mapping for class: {}, type: {}, index: {}", clazz.getSimpleName(), typeName, indexName);
+        }
+        GetMappingsResponse response;
+        try {
+            response = client.admin().indices().prepareGetMappings(indexName).setTypes(typeName).get();
+        } catch (IndexMissingException e) {
+            return null;
+        }
+        return getMapping(response, typeName);
+    }
+
+    @Nullable
+    private static String getMapping(GetMappingsResponse response, String typeName) {
+        for (ObjectCursor<ImmutableOpenMap<String, MappingMetaData>> indexMappings : response.getMappings().values()) {
+            MappingMetaData mappingMd = indexMappings.value.get(typeName);
+            if (mappingMd != null) {
+                try {
+                    return mappingMd.source().string();
+                } catch (IOException e) {
+                    logger.error("Failed convert mapping to string", e);
                 }
             }
         }
@@ -129,7 +185,257 @@ public class ElasticSearchIndexerImpl implements ElasticSearchIndexer {
         return null;
     }
 
-    private IndexRequestBuilder getIndexRequest(Object object) {
+    /**
+     * Make sure the mapping of the class exists in the index, create it if not.
+     * Only one thread checks the server for each index and type, other threads wait for its result.
+     *
+     * @param indexName index to write to
+     * @param clazz     class of the mapping
+     * @param typeName  type name of the class
+     */
+    protected void ensureMapping(final String indexName, final Class clazz, final String typeName) {
+        cache.load(CacheType.MAPPING, new MappingKey(indexName, typeName), new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return loadMapping(indexName, clazz, typeName);
+            }
+        });
+    }
+
+    /**
+     * Get the mapping of the class from the index, put it to the server if not exist. Called once per index and type.
+     *
+     * @param indexName index to write to
+     * @param clazz     class of the mapping
+     * @param typeName  type name of the class
+     * @return mapping json
+     */
+    protected String loadMapping(String indexName, Class clazz, String typeName) {
+        String mapping = getMapping(indexName, clazz);
+        if (mapping == null) {  // mapping not exist on server
+            mapping = MappingProcessor.getMappingAsJson(clazz);
+            doPutMapping(indexName, clazz, typeName, mapping);
+        }
+        return mapping;
+    }
+
+    /**
+     * Make sure the mapping of the class exists in the index without blocking, create it if not. The listener is called
+     * with the mapping on the calling thread if it is cached, otherwise on the thread of the last response.
+     *
+     * @param indexName index to write to
+     * @param clazz     class of the mapping
+     * @param typeName  type name of the class
+     * @param listener  listener notified once the mapping exists
+     */
+    protected void ensureMappingAsync(String indexName, Class clazz, String typeName, final ActionListener<String> listener) {
+        final MappingKey key = new MappingKey(indexName, typeName);
+        String cached = (String) cache.getCache(CacheType.MAPPING, key);
+        if (cached != null) {
+            listener.onResponse(cached);
+            return;
+        }
+        loadMappingAsync(indexName, clazz, typeName, new ActionListener<String>() {
+            @Override
+            public void onResponse(String mapping) {
+                cache.putCache(CacheType.MAPPING, key, mapping);
+                listener.onResponse(mapping);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Non blocking version of {@link #loadMapping(String, Class, String)}, gets the mapping and puts it if not exist
+     *
+     * @param indexName index to write to
+     * @param clazz     class of the mapping
+     * @param typeName  type name of the class
+     * @param listener  listener notified with the mapping json
+     */
+    protected void loadMappingAsync(final String indexName, final Class clazz, final String typeName, final ActionListener<String> listener) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Get mapping for class: {}, type: {}, index: {}", clazz.getSimpleName(), typeName, indexName);
+        }
+        client.admin().indices().prepareGetMappings(indexName).setTypes(typeName).execute(new ActionListener<GetMappingsResponse>() {
+            @Override
+            public void onResponse(GetMappingsResponse response) {
+                String mapping = getMapping(response, typeName);
+                if (mapping != null) {
+                    listener.onResponse(mapping);
+                } else {
+                    putMappingAsync(indexName, clazz, typeName, listener);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                if (ExceptionsHelper.unwrapCause(e) instanceof IndexMissingException) {
+                    putMappingAsync(indexName, clazz, typeName, listener);
+                } else {
+                    listener.onFailure(e);
+                }
+            }
+        });
+    }
+
+    private void putMappingAsync(String indexName, Class clazz, String typeName, final ActionListener<String> listener) {
+        final String mapping;
+        try {
+            mapping = MappingProcessor.getMappingAsJson(clazz);
+        } catch (Throwable e) {
+            listener.onFailure(e);
+            return;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Put mapping for class: {}, type: {}, index: {}, mapping: {}", clazz.getSimpleName(), typeName, indexName, mapping);
+        }
+        client.admin().indices().preparePutMapping(indexName).setType(typeName).setSource(mapping).execute(new ActionListener<PutMappingResponse>() {
+            @Override
+            public void onResponse(PutMappingResponse response) {
+                listener.onResponse(mapping);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Make sure all mappings exist without blocking, the listener is called once all of them do or one failed
+     */
+    private void ensureMappingsAsync(Map<MappingKey, Class> mappings, final ActionListener<Void> listener) {
+        if (mappings.isEmpty()) {
+            listener.onResponse(null);
+            return;
+        }
+        final AtomicInteger remaining = new AtomicInteger(mappings.size());
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (Map.Entry<MappingKey, Class> entry : mappings.entrySet()) {
+            ensureMappingAsync(entry.getKey().getIndexName(), entry.getValue(), entry.getKey().getTypeName(), new ActionListener<String>() {
+                @Override
+                public void onResponse(String mapping) {
+                    mappingDone();
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    failure.compareAndSet(null, e);
+                    mappingDone();
+                }
+
+                private void mappingDone() {
+                    if (remaining.decrementAndGet() > 0) {
+                        return;
+                    }
+                    if (failure.get() != null) {
+                        listener.onFailure(failure.get());
+                    } else {
+                        listener.onResponse(null);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Make sure the mappings exist in current index with a single get mappings request, missing mappings are put
+     * to the server. All mappings are cached for later writes.
+     *
+     * @param mappings mapping json of each class
+     */
+    public void ensureMappings(Map<Class, String> mappings) {
+        if (mappings.isEmpty()) {
+            return;
+        }
+        Map<String, Class> classes = Maps.newHashMap();
+        for (Class clazz : mappings.keySet()) {
+            classes.put(MappingProcessor.getIndexTypeName(clazz), clazz);
+        }
+        ImmutableOpenMap<String, MappingMetaData> serverMappings = null;
+        GetMappingsResponse response = client.admin().indices().prepareGetMappings(getIndexName())
+                .setTypes(classes.keySet().toArray(new String[classes.size()])).get();
+        if (response.getMappings().valuesIt().hasNext()) {
+            serverMappings = response.getMappings().valuesIt().next();
+        }
+        for (Map.Entry<String, Class> entry : classes.entrySet()) {
+            String typeName = entry.getKey();
+            Class clazz = entry.getValue();
+            MappingMetaData serverMapping = serverMappings != null ? serverMappings.get(typeName) : null;
+            String mapping;
+            if (serverMapping != null) {
+                try {
+                    mapping = serverMapping.source().string();
+                } catch (IOException e) {
+                    throw new ElasticSearchOsemException("Failed convert mapping to string", e);
+                }
+            } else {
+                mapping = mappings.get(clazz);
+                doPutMapping(clazz, typeName, mapping);
+            }
+            cache.putCache(CacheType.MAPPING, new MappingKey(getIndexName(), typeName), mapping);
+        }
+    }
+
+    /**
+     * Get the object processor used by this indexer
+     *
+     * @return object processor
+     */
+    public ObjectProcessor getObjectProcessor() {
+        return objectProcessor;
+    }
+
+    /**
+     * Get the near cache kept up to date by this indexer
+     *
+     * @return near cache
+     */
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    /**
+     * Get the client used by this indexer
+     *
+     * @return client
+     */
+    public Client getClient() {
+        return client;
+    }
+
+    /**
+     * Get the index an object is written to
+     *
+     * @param object object to write
+     * @return index name, current index by default
+     */
+    protected String getIndexName(Object object) {
+        return getIndexName();
+    }
+
+    /**
+     * Build the index request for object, create mapping for the object class first if not exist
+     *
+     * @param object object to index
+     * @return index request
+     */
+    public IndexRequestBuilder getIndexRequest(Object object) {
+        IndexRequestBuilder indexRequest = prepareIndex(object);
+        ensureMapping(indexRequest.request().index(), object.getClass(), indexRequest.request().type());
+        return indexRequest;
+    }
+
+    /**
+     * Build the index request for object without checking the mapping
+     */
+    private IndexRequestBuilder prepareIndex(Object object) {
         Class objectClass = object.getClass();
         String typeName = MappingProcessor.getIndexTypeName(objectClass);
         Object objectId = objectProcessor.getIdValue(object);
@@ -137,17 +443,15 @@ public class ElasticSearchIndexerImpl implements ElasticSearchIndexer {
             throw new ElasticSearchOsemException("Unable to find object id");
         }
 
-        String objectJson = objectProcessor.toJsonString(object);
-
-        logger.debug("Get index object request, type:{}, id: {}, content: {}", typeName, objectId, objectJson);
+        BytesReference source = objectProcessor.toJsonBytes(object);
 
-        if (!cache.isExist(CacheType.MAPPING, objectClass)) {  // check mapping exist in cache or not
-            if (getMapping(objectClass) == null) {  // mapping not exist on server
-                createMapping(objectClass);  // create mapping first
-            }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Get index object request, type:{}, id: {}, content: {}", typeName, objectId, source.toUtf8());
         }
-        IndexRequestBuilder indexRequestBuilder = client.prepareIndex(getIndexName(), typeName, objectId.toString());
-        indexRequestBuilder.setSource(objectJson);
+
+        String indexName = getIndexName(object);
+        IndexRequestBuilder indexRequestBuilder = client.prepareIndex(indexName, typeName, objectId.toString());
+        indexRequestBuilder.setSource(source);
         String routing = objectProcessor.getRoutingId(object);
         if (routing != null) {
             indexRequestBuilder.setRouting(routing);
@@ -156,16 +460,144 @@ public class ElasticSearchIndexerImpl implements ElasticSearchIndexer {
         if (parent != null) {
             indexRequestBuilder.setParent(parent);
         }
+        Long version = objectProcessor.getVersion(object);
+        if (version != null) {
+            indexRequestBuilder.setVersion(version).setVersionType(OsemClassModel.of(objectClass).getVersionType());
+        }
         return indexRequestBuilder;
     }
 
     @Override
     public IndexResponse index(Object object) {
-        return getIndexRequest(object).get();
+        IndexRequestBuilder indexRequest = getIndexRequest(object);
+        IndexResponse response;
+        try {
+            response = indexRequest.get();
+        } catch (RuntimeException e) {
+            throw OsemVersionConflictException.convert(e, indexRequest.request().index(), indexRequest.request().type(),
+                    indexRequest.request().id());
+        }
+        afterIndex(object, indexRequest.request(), response);
+        return response;
+    }
+
+    /**
+     * Update near cache, version and dirty tracking snapshot of an indexed object
+     */
+    private void afterIndex(Object object, IndexRequest indexRequest, IndexResponse response) {
+        nearCache.onIndexResponse(indexRequest, response);
+        objectProcessor.setVersion(object, response.getVersion());
+        if (OsemClassModel.of(object.getClass()).isDirtyTracking()) {
+            objectProcessor.getDirtyTracker().snapshot(object, indexRequest.source());
+        }
     }
 
     @Override
-    public BulkResponse bulkIndex(Object... objects) {
+    public ListenableActionFuture<IndexResponse> indexAsync(Object object) {
+        return executeIndex(object);
+    }
+
+    @Override
+    public void indexAsync(Object object, ActionListener<IndexResponse> listener) {
+        executeIndex(object).addListener(listener);
+    }
+
+    /**
+     * Index an object without blocking, the mapping is checked asynchronously before the first write of a type. The
+     * returned future completes after the object is updated with the response.
+     */
+    private ListenableActionFuture<IndexResponse> executeIndex(final Object object) {
+        final OsemActionFuture<IndexResponse> future = new OsemActionFuture<IndexResponse>();
+        final IndexRequestBuilder indexRequest = prepareIndex(object);
+        ensureMappingAsync(indexRequest.request().index(), object.getClass(), indexRequest.request().type(), new ActionListener<String>() {
+            @Override
+            public void onResponse(String mapping) {
+                executeIndex(object, indexRequest, future);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                future.onFailure(e);
+            }
+        });
+        return future;
+    }
+
+    private void executeIndex(final Object object, final IndexRequestBuilder indexRequest, final OsemActionFuture<IndexResponse> future) {
+        indexRequest.execute(new ActionListener<IndexResponse>() {
+            @Override
+            public void onResponse(IndexResponse response) {
+                try {
+                    afterIndex(object, indexRequest.request(), response);
+                } catch (Throwable e) {
+                    future.onFailure(e);
+                    return;
+                }
+                future.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                future.onFailure(OsemVersionConflictException.convert(e, indexRequest.request().index(),
+                        indexRequest.request().type(), indexRequest.request().id()));
+            }
+        });
+    }
+
+    /**
+     * Execute a bulk request, the returned future completes after the near cache and the version of the objects are
+     * updated with the result of each item
+     */
+    private ListenableActionFuture<BulkResponse> executeBulk(BulkRequestBuilder bulkRequest) {
+        OsemActionFuture<BulkResponse> future = new OsemActionFuture<BulkResponse>();
+        executeBulk(bulkRequest, future);
+        return future;
+    }
+
+    private void executeBulk(final BulkRequestBuilder bulkRequest, final OsemActionFuture<BulkResponse> future) {
+        bulkRequest.execute(new ActionListener<BulkResponse>() {
+            @Override
+            public void onResponse(BulkResponse response) {
+                try {
+                    afterBulk(bulkRequest.request(), response);
+                } catch (Throwable e) {
+                    future.onFailure(e);
+                    return;
+                }
+                future.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                future.onFailure(e);
+            }
+        });
+    }
+
+    private BulkResponse getBulk(BulkRequestBuilder bulkRequest) {
+        BulkResponse response = bulkRequest.get();
+        afterBulk(bulkRequest.request(), response);
+        return response;
+    }
+
+    private void afterBulk(BulkRequest bulkRequest, BulkResponse response) {
+        nearCache.onBulkResponse(bulkRequest, response);
+        objectProcessor.setVersions(bulkRequest, response);
+        if (logger.isDebugEnabled()) {
+            for (OsemVersionConflictException conflict : OsemVersionConflictException.getConflicts(response)) {
+                logger.debug("Version conflict in bulk, item: {}, type: {}, id: {}", conflict.getItemId(), conflict.getType(), conflict.getId());
+            }
+        }
+    }
+
+    /**
+     * Build a bulk index request without checking the mappings
+     *
+     * @param mappings filled with the class of each index and type written to
+     * @param objects  objects or index requests to write
+     * @return bulk request
+     */
+    private BulkRequestBuilder getBulkIndexRequest(Map<MappingKey, Class> mappings, Object... objects) {
         BulkRequestBuilder bulkRequest = client.prepareBulk();
         logger.debug("Bulk index {} objects", objects.length);
         for (Object object : objects) {
@@ -173,22 +605,235 @@ public class ElasticSearchIndexerImpl implements ElasticSearchIndexer {
                 if (object instanceof IndexRequestBuilder) {
                     bulkRequest.add((IndexRequestBuilder) object);
                 } else {
-                    bulkRequest.add(getIndexRequest(object));
+                    IndexRequest indexRequest = prepareIndex(object).request();
+                    mappings.put(new MappingKey(indexRequest.index(), indexRequest.type()), object.getClass());
+                    bulkRequest.request().add(indexRequest, object);
                 }
             }
         }
-        return bulkRequest.get();
+        return bulkRequest;
+    }
 
+    @Override
+    public BulkResponse bulkIndex(Object... objects) {
+        Map<MappingKey, Class> mappings = Maps.newHashMap();
+        BulkRequestBuilder bulkRequest = getBulkIndexRequest(mappings, objects);
+        for (Map.Entry<MappingKey, Class> entry : mappings.entrySet()) {
+            ensureMapping(entry.getKey().getIndexName(), entry.getValue(), entry.getKey().getTypeName());
+        }
+        return getBulk(bulkRequest);
+    }
+
+    @Override
+    public ListenableActionFuture<BulkResponse> bulkIndexAsync(Object... objects) {
+        return executeBulkIndex(objects);
+    }
+
+    @Override
+    public void bulkIndexAsync(ActionListener<BulkResponse> listener, Object... objects) {
+        executeBulkIndex(objects).addListener(listener);
+    }
+
+    /**
+     * Bulk index without blocking, the mappings are checked asynchronously before the first write of a type
+     */
+    private ListenableActionFuture<BulkResponse> executeBulkIndex(Object... objects) {
+        final OsemActionFuture<BulkResponse> future = new OsemActionFuture<BulkResponse>();
+        Map<MappingKey, Class> mappings = Maps.newHashMap();
+        final BulkRequestBuilder bulkRequest = getBulkIndexRequest(mappings, objects);
+        ensureMappingsAsync(mappings, new ActionListener<Void>() {
+            @Override
+            public void onResponse(Void aVoid) {
+                executeBulk(bulkRequest, future);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                future.onFailure(e);
+            }
+        });
+        return future;
     }
 
-    private DeleteRequestBuilder getDeleteRequest(Object object) {
+    private UpdateRequestBuilder prepareUpdate(Object object) {
+        Class objectClass = object.getClass();
+        String typeName = MappingProcessor.getIndexTypeName(objectClass);
+        Object objectId = objectProcessor.getIdValue(object);
+        if (objectId == null) {
+            throw new ElasticSearchOsemException("Unable to find object id");
+        }
+
+        String indexName = getIndexName(object);
+        ensureMapping(indexName, objectClass, typeName);
+        UpdateRequestBuilder updateRequestBuilder = client.prepareUpdate(indexName, typeName, objectId.toString());
+        String routing = objectProcessor.getRoutingId(object);
+        if (routing != null) {
+            updateRequestBuilder.setRouting(routing);
+        }
+        String parent = objectProcessor.getParentId(object);
+        if (parent != null) {
+            updateRequestBuilder.setParent(parent);
+        }
+        Long version = objectProcessor.getVersion(object);
+        if (version != null && OsemClassModel.of(objectClass).getVersionType() == VersionType.INTERNAL) {
+            updateRequestBuilder.setVersion(version);
+        }
+        return updateRequestBuilder;
+    }
+
+    /**
+     * Build the update request for some properties of object, create mapping for the object class first if not exist
+     *
+     * @param object        object to update
+     * @param upsert        index the whole object if it doesn't exist
+     * @param propertyNames java field names or json names of the top level properties to update
+     * @return update request
+     */
+    public UpdateRequestBuilder getUpdateRequest(Object object, boolean upsert, String... propertyNames) {
+        Preconditions.checkArgument(propertyNames.length > 0, "Must have at least one property to update");
+        OsemClassModel classModel = OsemClassModel.of(object.getClass());
+        Set<String> names = Sets.newHashSetWithExpectedSize(propertyNames.length);
+        for (String propertyName : propertyNames) {
+            names.add(classModel.getPropertyName(propertyName));
+        }
+        BytesReference doc = objectProcessor.toPartialJsonBytes(object, names);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Get update object request, type:{}, doc: {}", classModel.getIndexTypeName(), doc.toUtf8());
+        }
+
+        UpdateRequestBuilder updateRequestBuilder = prepareUpdate(object);
+        updateRequestBuilder.setDoc(doc.array(), doc.arrayOffset(), doc.length());
+        if (upsert) {
+            BytesReference source = objectProcessor.toJsonBytes(object);
+            updateRequestBuilder.setUpsert(source.array(), source.arrayOffset(), source.length());
+        }
+        return updateRequestBuilder;
+    }
+
+    /**
+     * Build the update request for the properties changed since the object was read or indexed
+     *
+     * @param object object to update
+     * @return update request, null if nothing changed
+     */
+    public UpdateRequestBuilder getChangedUpdateRequest(Object object) {
+        return getChangedUpdateRequestWithSource(object).v1();
+    }
+
+    /**
+     * Build the update request for the properties changed since the object was read or indexed, with the source it
+     * was built from to keep as snapshot once the update succeeded
+     *
+     * @param object object to update
+     * @return update request, null if nothing changed, and the current source of the object
+     */
+    public Tuple<UpdateRequestBuilder, BytesReference> getChangedUpdateRequestWithSource(Object object) {
+        BytesReference source = objectProcessor.toJsonBytes(object);
+        Map<String, Object> changes = objectProcessor.getDirtyTracker().getChanges(object, source);
+        if (changes != null && changes.isEmpty()) {
+            logger.debug("No change for object, type:{}", MappingProcessor.getIndexTypeName(object.getClass()));
+            return new Tuple<UpdateRequestBuilder, BytesReference>(null, source);
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Get update changed object request, type:{}, changes: {}", MappingProcessor.getIndexTypeName(object.getClass()),
+                    changes == null ? "all" : changes.keySet());
+        }
+
+        UpdateRequestBuilder updateRequestBuilder = prepareUpdate(object);
+        if (changes == null) {  // no snapshot, send all properties
+            updateRequestBuilder.setDoc(source.array(), source.arrayOffset(), source.length());
+        } else {
+            updateRequestBuilder.setDoc(changes);
+        }
+        return new Tuple<UpdateRequestBuilder, BytesReference>(updateRequestBuilder, source);
+    }
+
+    @Override
+    public UpdateResponse update(Object object, String... propertyNames) {
+        return getUpdate(object, getUpdateRequest(object, false, propertyNames));
+    }
+
+    @Override
+    public UpdateResponse upsert(Object object, String... propertyNames) {
+        return getUpdate(object, getUpdateRequest(object, true, propertyNames));
+    }
+
+    /**
+     * Execute an update request, the document is removed from near cache as its full source is unknown
+     */
+    private UpdateResponse getUpdate(Object object, UpdateRequestBuilder updateRequest) {
+        try {
+            UpdateResponse response = updateRequest.get();
+            objectProcessor.setVersion(object, response.getVersion());
+            return response;
+        } catch (RuntimeException e) {
+            throw OsemVersionConflictException.convert(e, updateRequest.request().index(), updateRequest.request().type(),
+                    updateRequest.request().id());
+        } finally {
+            nearCache.invalidate(updateRequest.request().type(), updateRequest.request().index(), updateRequest.request().id(),
+                    updateRequest.request().routing());
+        }
+    }
+
+    @Override
+    public UpdateResponse updateChanged(Object object) {
+        Tuple<UpdateRequestBuilder, BytesReference> request = getChangedUpdateRequestWithSource(object);
+        if (request.v1() == null) {
+            return null;
+        }
+        UpdateResponse response = getUpdate(object, request.v1());
+        objectProcessor.getDirtyTracker().snapshot(object, request.v2());
+        return response;
+    }
+
+    @Override
+    public BulkResponse bulkUpdate(Object... objects) {
+        BulkRequestBuilder bulkRequest = client.prepareBulk();
+        logger.debug("Bulk update {} objects", objects.length);
+        List<Tuple<Object, BytesReference>> sources = Lists.newArrayList();  // snapshot to keep for each item
+        for (Object object : objects) {
+            if (object != null) {
+                if (object instanceof UpdateRequestBuilder) {
+                    bulkRequest.add((UpdateRequestBuilder) object);
+                    sources.add(null);
+                } else {
+                    Tuple<UpdateRequestBuilder, BytesReference> request = getChangedUpdateRequestWithSource(object);
+                    if (request.v1() != null) {
+                        bulkRequest.request().add(request.v1().request(), object);
+                        sources.add(new Tuple<Object, BytesReference>(object, request.v2()));
+                    }
+                }
+            }
+        }
+        if (bulkRequest.numberOfActions() == 0) {
+            return new BulkResponse(new BulkItemResponse[0], 0);
+        }
+        BulkResponse response = getBulk(bulkRequest);
+        for (BulkItemResponse item : response.getItems()) {
+            Tuple<Object, BytesReference> source = sources.get(item.getItemId());
+            if (!item.isFailed() && source != null) {
+                objectProcessor.getDirtyTracker().snapshot(source.v1(), source.v2());
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Build the delete request for object
+     *
+     * @param object object to delete
+     * @return delete request
+     */
+    public DeleteRequestBuilder getDeleteRequest(Object object) {
         String typeName = MappingProcessor.getIndexTypeName(object.getClass());
         Object objectId = objectProcessor.getIdValue(object);
         if (objectId == null) {
             throw new ElasticSearchOsemException("Unable to find object id");
         }
         logger.debug("Get delete object request, type:{}, id: {}", typeName, objectId);
-        DeleteRequestBuilder deleteRequestBuilder = client.prepareDelete(getIndexName(), typeName, objectId.toString());
+        DeleteRequestBuilder deleteRequestBuilder = client.prepareDelete(getIndexName(object), typeName, objectId.toString());
         String routing = objectProcessor.getRoutingId(object);
         if (routing != null) {
             deleteRequestBuilder.setRouting(routing);
@@ -197,17 +842,64 @@ public class ElasticSearchIndexerImpl implements ElasticSearchIndexer {
         if (parent != null) {
             deleteRequestBuilder.setParent(parent);
         }
+        Long version = objectProcessor.getVersion(object);
+        if (version != null) {
+            deleteRequestBuilder.setVersion(version).setVersionType(OsemClassModel.of(object.getClass()).getVersionType());
+        }
         return deleteRequestBuilder;
     }
 
     @Override
     public DeleteResponse delete(Object object) {
-        return getDeleteRequest(object).get();
+        DeleteRequestBuilder deleteRequest = getDeleteRequest(object);
+        DeleteResponse response;
+        try {
+            response = deleteRequest.get();
+        } catch (RuntimeException e) {
+            throw OsemVersionConflictException.convert(e, deleteRequest.request().index(), deleteRequest.request().type(),
+                    deleteRequest.request().id());
+        }
+        nearCache.onDeleteResponse(deleteRequest.request(), response);
+        return response;
     }
 
+    @Override
+    public ListenableActionFuture<DeleteResponse> deleteAsync(Object object) {
+        return executeDelete(getDeleteRequest(object));
+    }
 
     @Override
-    public BulkResponse bulkDelete(Object... objects) {
+    public void deleteAsync(Object object, ActionListener<DeleteResponse> listener) {
+        executeDelete(getDeleteRequest(object)).addListener(listener);
+    }
+
+    /**
+     * Execute a delete request, the returned future completes after the near cache is updated
+     */
+    private ListenableActionFuture<DeleteResponse> executeDelete(final DeleteRequestBuilder deleteRequest) {
+        final OsemActionFuture<DeleteResponse> future = new OsemActionFuture<DeleteResponse>();
+        deleteRequest.execute(new ActionListener<DeleteResponse>() {
+            @Override
+            public void onResponse(DeleteResponse response) {
+                try {
+                    nearCache.onDeleteResponse(deleteRequest.request(), response);
+                } catch (Throwable e) {
+                    future.onFailure(e);
+                    return;
+                }
+                future.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                future.onFailure(OsemVersionConflictException.convert(e, deleteRequest.request().index(),
+                        deleteRequest.request().type(), deleteRequest.request().id()));
+            }
+        });
+        return future;
+    }
+
+    private BulkRequestBuilder getBulkDeleteRequest(Object... objects) {
         BulkRequestBuilder bulkRequest = client.prepareBulk();
         logger.debug("Bulk delete {} objects", objects.length);
         for (Object object : objects) {
@@ -215,18 +907,74 @@ public class ElasticSearchIndexerImpl implements ElasticSearchIndexer {
                 if (object instanceof DeleteRequestBuilder) {
                     bulkRequest.add((DeleteRequestBuilder) object);
                 } else {
-                    bulkRequest.add(getDeleteRequest(object));
+                    bulkRequest.request().add(getDeleteRequest(object).request(), object);
                 }
             }
         }
-        return bulkRequest.get();
+        return bulkRequest;
+    }
+
+    @Override
+    public BulkResponse bulkDelete(Object... objects) {
+        return getBulk(getBulkDeleteRequest(objects));
     }
 
+    @Override
+    public ListenableActionFuture<BulkResponse> bulkDeleteAsync(Object... objects) {
+        return executeBulk(getBulkDeleteRequest(objects));
+    }
+
+    @Override
+    public void bulkDeleteAsync(ActionListener<BulkResponse> listener, Object... objects) {
+        executeBulk(getBulkDeleteRequest(objects)).addListener(listener);
+    }
+
+    private DeleteByQueryRequestBuilder getDeleteByQueryRequest(Class clazz, QueryBuilder queryBuilder) {
+        String typeName = MappingProcessor.getIndexTypeName(clazz);
+        return client.prepareDeleteByQuery(getIndexName()).setQuery(queryBuilder).setTypes(typeName);
+    }
 
     @Override
     public DeleteByQueryResponse deleteByQuery(Class clazz, QueryBuilder queryBuilder) {
         String typeName = MappingProcessor.getIndexTypeName(clazz);
-        return client.prepareDeleteByQuery(getIndexName()).setQuery(queryBuilder).setTypes(typeName).get();
+        try {
+            return getDeleteByQueryRequest(clazz, queryBuilder).get();
+        } finally {
+            nearCache.invalidateAll(typeName);
+        }
+    }
+
+    @Override
+    public ListenableActionFuture<DeleteByQueryResponse> deleteByQueryAsync(Class clazz, QueryBuilder queryBuilder) {
+        return executeDeleteByQuery(clazz, queryBuilder);
+    }
+
+    @Override
+    public void deleteByQueryAsync(Class clazz, QueryBuilder queryBuilder, ActionListener<DeleteByQueryResponse> listener) {
+        executeDeleteByQuery(clazz, queryBuilder).addListener(listener);
+    }
+
+    /**
+     * Execute a delete by query, the near cache of the type is cleared once it finished so gets running meanwhile
+     * can't leave deleted documents cached. The returned future completes after that.
+     */
+    private ListenableActionFuture<DeleteByQueryResponse> executeDeleteByQuery(Class clazz, QueryBuilder queryBuilder) {
+        final String typeName = MappingProcessor.getIndexTypeName(clazz);
+        final OsemActionFuture<DeleteByQueryResponse> future = new OsemActionFuture<DeleteByQueryResponse>();
+        getDeleteByQueryRequest(clazz, queryBuilder).execute(new ActionListener<DeleteByQueryResponse>() {
+            @Override
+            public void onResponse(DeleteByQueryResponse response) {
+                nearCache.invalidateAll(typeName);
+                future.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                nearCache.invalidateAll(typeName);  // some shards may have deleted
+                future.onFailure(e);
+            }
+        });
+        return future;
     }
 
 
@@ -250,12 +998,23 @@ public class ElasticSearchIndexerImpl implements ElasticSearchIndexer {
     public DeleteIndexResponse deleteIndex() {
         logger.debug("Delete index: {}", getIndexName());
         if (indexExist()) {
-            return client.admin().indices().prepareDelete(getIndexName()).get();
+            DeleteIndexResponse response = client.admin().indices().prepareDelete(getIndexName()).get();
+            removeCachedMappings(getIndexName());
+            nearCache.clear();
+            return response;
         }
         logger.warn("Index {} not exist, cannot delete", getIndexName());
         return null;
     }
 
+    protected void removeCachedMappings(String indexName) {
+        for (Object key : cache.getSubCache(CacheType.MAPPING).asMap().keySet()) {
+            if (key instanceof MappingKey && indexName.equals(((MappingKey) key).getIndexName())) {
+                cache.removeCache(CacheType.MAPPING, key);
+            }
+        }
+    }
+
     @Override
     public RefreshResponse refreshIndex() {
         logger.debug("Refresh index: {}", getIndexName());
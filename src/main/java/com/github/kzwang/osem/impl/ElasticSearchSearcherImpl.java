@@ -1,42 +1,138 @@
 package com.github.kzwang.osem.impl;
 
 import com.github.kzwang.osem.api.ElasticSearchSearcher;
+import com.github.kzwang.osem.api.ScrollIterator;
+import com.github.kzwang.osem.api.SearchResult;
+import com.github.kzwang.osem.cache.NearCache;
+import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import com.github.kzwang.osem.processor.DocumentKey;
 import com.github.kzwang.osem.processor.MappingProcessor;
 import com.github.kzwang.osem.processor.ObjectProcessor;
+import com.github.kzwang.osem.processor.OsemClassModel;
+import com.github.kzwang.osem.processor.OsemContext;
+import com.github.kzwang.osem.processor.SourceProjection;
+import com.github.kzwang.osem.rolling.RollingIndexPattern;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.count.CountRequestBuilder;
 import org.elasticsearch.action.get.GetRequestBuilder;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
 import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Preconditions;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.fetch.source.FetchSourceContext;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 public class ElasticSearchSearcherImpl implements ElasticSearchSearcher {
 
     private static final ESLogger logger = Loggers.getLogger(ElasticSearchSearcherImpl.class);
 
+    private static final TimeValue DEFAULT_SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+
+    private static final int DEFAULT_SCROLL_SIZE = 100;
+
+    private static final int DEFAULT_MULTI_GET_CHUNK_SIZE = 500;
+
     private Client client;
 
     private String indexName;
 
     private ObjectProcessor objectProcessor;
 
+    private NearCache nearCache;
+
+    private volatile ParallelHitDeserializer parallelHitDeserializer;
+
+    private volatile int multiGetChunkSize = DEFAULT_MULTI_GET_CHUNK_SIZE;
+
     public ElasticSearchSearcherImpl(Client client, String indexName) {
+        this(client, indexName, OsemContext.getInstance());
+    }
+
+    /**
+     * Create with the processor of the context, cheap as nothing is built per instance
+     *
+     * @param client    ElasticSearch client
+     * @param indexName name of the index
+     * @param context   OSEM context to share
+     */
+    public ElasticSearchSearcherImpl(Client client, String indexName, OsemContext context) {
         this.client = client;
         this.indexName = indexName;
-        objectProcessor = new ObjectProcessor();
+        objectProcessor = context.getObjectProcessor();
+        nearCache = context.getNearCache();
+    }
+
+    /**
+     * Get the object processor used by this searcher
+     *
+     * @return object processor
+     */
+    public ObjectProcessor getObjectProcessor() {
+        return objectProcessor;
+    }
+
+    /**
+     * Get the near cache of get by id, shared with the indexers of the same context
+     *
+     * @return near cache
+     */
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    /**
+     * Get the deserializer converting large search pages in parallel
+     *
+     * @return parallel deserializer, null if hits are always converted on the calling thread
+     */
+    @Nullable
+    public ParallelHitDeserializer getParallelHitDeserializer() {
+        return parallelHitDeserializer;
+    }
+
+    /**
+     * Enable parallel conversion of large search pages, pages below its thresholds stay on the calling thread
+     *
+     * @param parallelHitDeserializer parallel deserializer, null to disable
+     */
+    public void setParallelHitDeserializer(@Nullable ParallelHitDeserializer parallelHitDeserializer) {
+        this.parallelHitDeserializer = parallelHitDeserializer;
+    }
+
+    public int getMultiGetChunkSize() {
+        return multiGetChunkSize;
+    }
+
+    /**
+     * Set max number of documents in each multi get request of {@link #getByKeys(Class, List)}
+     *
+     * @param multiGetChunkSize max documents per request
+     */
+    public void setMultiGetChunkSize(int multiGetChunkSize) {
+        Preconditions.checkArgument(multiGetChunkSize > 0, "Multi get chunk size must be positive");
+        this.multiGetChunkSize = multiGetChunkSize;
     }
 
     public String getIndexName() {
@@ -104,25 +200,86 @@ public class ElasticSearchSearcherImpl implements ElasticSearchSearcher {
 
     @Override
     public <T> List<T> search(Class<T> clazz, SearchRequestBuilder requestBuilder) {
+        return searchResult(clazz, requestBuilder).getObjects();
+    }
+
+    @Override
+    public <T> List<T> search(SourceProjection<T> projection, SearchRequestBuilder requestBuilder) {
+        return searchResult(projection, requestBuilder).getObjects();
+    }
+
+    @Override
+    public <T> SearchResult<T> searchResult(final Class<T> clazz, SearchRequestBuilder requestBuilder) {
         Preconditions.checkArgument(requestBuilder.request().types().length > 0, "Must have at least one type");
-        SearchResponse response = requestBuilder.get();
-        List<T> results = new ArrayList<T>();
-        if (response != null && response.getHits() != null) {
-            SearchHit[] hits = response.getHits().getHits();
-            if (hits != null && hits.length > 0) {
-                for (SearchHit hit : hits) {
-                    T t = objectProcessor.fromJsonString(hit.getSourceAsString(), clazz);
-                    results.add(t);
-                }
+        if (OsemClassModel.of(clazz).getVersionField() != null) {
+            requestBuilder.setVersion(true);
+        }
+        return new SearchResultImpl<T>(requestBuilder.get(), new SearchResultImpl.SourceConverter<T>() {
+            @Override
+            public T convert(SearchHit hit) {
+                return fromSource(clazz, hit.sourceRef(), hit.getVersion());
             }
+        }, parallelHitDeserializer);
+    }
+
+    @Override
+    public <T> SearchResult<T> searchResult(final SourceProjection<T> projection, SearchRequestBuilder requestBuilder) {
+        Preconditions.checkArgument(requestBuilder.request().types().length > 0, "Must have at least one type");
+        if (logger.isDebugEnabled()) {
+            logger.debug("Search with projection: {}", projection);
         }
-        return results;
+        requestBuilder.setFetchSource(projection.getIncludes(), projection.getExcludes());
+        if (OsemClassModel.of(projection.getTargetClass()).getVersionField() != null) {
+            requestBuilder.setVersion(true);
+        }
+        return new SearchResultImpl<T>(requestBuilder.get(), new SearchResultImpl.SourceConverter<T>() {
+            @Override
+            public T convert(SearchHit hit) {
+                return fromSource(projection, hit.sourceRef(), hit.getVersion());
+            }
+        }, parallelHitDeserializer);
+    }
+
+    @Override
+    public <T> ScrollIterator<T> scroll(Class<T> clazz, @Nullable QueryBuilder queryBuilder) {
+        SearchRequestBuilder builder = getSearchRequestBuilder(clazz);
+        if (queryBuilder != null) {
+            builder.setQuery(queryBuilder);
+        }
+        return scroll(clazz, builder, DEFAULT_SCROLL_KEEP_ALIVE, DEFAULT_SCROLL_SIZE);
+    }
+
+    @Override
+    public <T> ScrollIterator<T> scroll(Class<T> clazz, SearchRequestBuilder requestBuilder, TimeValue keepAlive, int size) {
+        Preconditions.checkArgument(requestBuilder.request().types().length > 0, "Must have at least one type");
+        Preconditions.checkArgument(size > 0, "Scroll size must be positive");
+        requestBuilder.setSearchType(SearchType.SCAN).setScroll(keepAlive).setSize(size);
+        if (OsemClassModel.of(clazz).getVersionField() != null) {
+            requestBuilder.setVersion(true);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Scroll for class: {}, keep alive: {}, size: {}", clazz.getSimpleName(), keepAlive, size);
+        }
+        return new ScrollIteratorImpl<T>(client, clazz, requestBuilder.get(), keepAlive, objectProcessor);
     }
 
     @Override
     public SearchRequestBuilder getSearchRequestBuilder(Class... clazz) {
+        return getSearchRequestBuilder(new String[]{getIndexName()}, clazz);
+    }
+
+    @Override
+    public SearchRequestBuilder getSearchRequestBuilder(RollingIndexPattern pattern, Date from, Date to, Class... clazz) {
+        String[] indexNames = pattern.getIndexNames(from, to);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Search window from {} to {}, indices: {}", from, to, Arrays.toString(indexNames));
+        }
+        return getSearchRequestBuilder(indexNames, clazz).setIndicesOptions(IndicesOptions.lenient());
+    }
+
+    private SearchRequestBuilder getSearchRequestBuilder(String[] indexNames, Class... clazz) {
         Preconditions.checkArgument(clazz.length > 0, "Must have at least one class");
-        SearchRequestBuilder builder = client.prepareSearch(getIndexName());
+        SearchRequestBuilder builder = client.prepareSearch(indexNames);
         List<String> typeNames = new ArrayList<String>();
         for (Class c : clazz) {
             String typeName = MappingProcessor.getIndexTypeName(c);
@@ -147,6 +304,10 @@ public class ElasticSearchSearcherImpl implements ElasticSearchSearcher {
         if (logger.isDebugEnabled()) {
             logger.debug("Get object by id, class: {}, type: {}, id: {}, routing: {}", clazz.getSimpleName(), typeName, id, routing);
         }
+        NearCache.Entry entry = nearCache.get(clazz, getIndexName(), id, routing);
+        if (entry != null) {
+            return entry.isDeleted() ? null : fromSource(clazz, entry.getSource(), entry.getVersion());
+        }
         GetRequestBuilder getRequest = client.prepareGet(getIndexName(), typeName, id);
         if (routing != null) {
             getRequest.setRouting(routing);
@@ -155,7 +316,26 @@ public class ElasticSearchSearcherImpl implements ElasticSearchSearcher {
         if (!response.isExists()) {
             return null;
         }
-        return objectProcessor.fromJsonString(response.getSourceAsString(), clazz);
+        nearCache.putRead(clazz, getIndexName(), id, routing, response.getSourceAsBytesRef(), response.getVersion());
+        return fromSource(clazz, response.getSourceAsBytesRef(), response.getVersion());
+    }
+
+    @Override
+    public <T> T getById(SourceProjection<T> projection, String id, @Nullable String routing) {
+        String typeName = MappingProcessor.getIndexTypeName(projection.getSourceClass());
+        if (logger.isDebugEnabled()) {
+            logger.debug("Get object by id, projection: {}, type: {}, id: {}, routing: {}", projection, typeName, id, routing);
+        }
+        GetRequestBuilder getRequest = client.prepareGet(getIndexName(), typeName, id)
+                .setFetchSource(projection.getIncludes(), projection.getExcludes());
+        if (routing != null) {
+            getRequest.setRouting(routing);
+        }
+        GetResponse response = getRequest.get();
+        if (!response.isExists()) {
+            return null;
+        }
+        return fromSource(projection, response.getSourceAsBytesRef(), response.getVersion());
     }
 
     @Override
@@ -164,15 +344,177 @@ public class ElasticSearchSearcherImpl implements ElasticSearchSearcher {
         if (logger.isDebugEnabled()) {
             logger.debug("Get objects by ids, class: {}, type: {}, ids: {}", clazz.getSimpleName(), typeName, ids);
         }
-        MultiGetResponse responses = client.prepareMultiGet().add(getIndexName(), typeName, ids).get();
+        NearCache.Entry[] cached = new NearCache.Entry[ids.size()];
+        List<DocumentKey> missingKeys = new ArrayList<DocumentKey>();
+        for (int i = 0; i < ids.size(); i++) {  // only get the ids not in near cache
+            cached[i] = nearCache.get(clazz, getIndexName(), ids.get(i), null);
+            if (cached[i] == null) {
+                missingKeys.add(new DocumentKey(ids.get(i), null));
+            }
+        }
+        GetResponse[] responses = multiGet(clazz, missingKeys, null);  // fails like getByKeys if an item failed
         List<T> results = new ArrayList<T>();
-        if (responses != null) {
-            for (MultiGetItemResponse response : responses) {
-                if (response.getResponse() != null) {
-                    results.add(objectProcessor.fromJsonString(response.getResponse().getSourceAsString(), clazz));
+        int responseIndex = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            if (cached[i] != null) {
+                if (!cached[i].isDeleted()) {
+                    results.add(fromSource(clazz, cached[i].getSource(), cached[i].getVersion()));
                 }
+            } else {
+                GetResponse response = responses[responseIndex++];
+                if (response != null) {
+                    results.add(fromSource(clazz, response.getSourceAsBytesRef(), response.getVersion()));
+                }
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public <T> List<T> getByIds(SourceProjection<T> projection, List<String> ids) {
+        String typeName = MappingProcessor.getIndexTypeName(projection.getSourceClass());
+        if (logger.isDebugEnabled()) {
+            logger.debug("Get objects by ids, projection: {}, type: {}, ids: {}", projection, typeName, ids);
+        }
+        List<DocumentKey> keys = new ArrayList<DocumentKey>(ids.size());
+        for (String id : ids) {
+            keys.add(new DocumentKey(id, null));
+        }
+        List<T> results = new ArrayList<T>();
+        for (GetResponse response : multiGet(projection.getSourceClass(), keys, projection.getFetchSourceContext())) {
+            if (response != null) {
+                results.add(fromSource(projection, response.getSourceAsBytesRef(), response.getVersion()));
             }
         }
         return results;
     }
+
+    @Override
+    public <T> List<T> getByKeys(Class<T> clazz, List<DocumentKey> keys) {
+        GetResponse[] responses = multiGet(clazz, keys, null);
+        List<T> results = new ArrayList<T>(responses.length);
+        for (GetResponse response : responses) {
+            results.add(response != null ? fromSource(clazz, response.getSourceAsBytesRef(), response.getVersion()) : null);
+        }
+        return results;
+    }
+
+    @Override
+    public <T> List<T> getByKeys(SourceProjection<T> projection, List<DocumentKey> keys) {
+        GetResponse[] responses = multiGet(projection.getSourceClass(), keys, projection.getFetchSourceContext());
+        List<T> results = new ArrayList<T>(responses.length);
+        for (GetResponse response : responses) {
+            results.add(response != null ? fromSource(projection, response.getSourceAsBytesRef(), response.getVersion()) : null);
+        }
+        return results;
+    }
+
+    /**
+     * Deserialize a document and set its version
+     */
+    private <T> T fromSource(Class<T> clazz, BytesReference source, long version) {
+        T object = objectProcessor.fromJsonBytes(source, clazz);
+        objectProcessor.setVersion(object, version);
+        return object;
+    }
+
+    private <T> T fromSource(SourceProjection<T> projection, BytesReference source, long version) {
+        T object = projection.fromSource(objectProcessor, source);
+        objectProcessor.setVersion(object, version);
+        return object;
+    }
+
+    /**
+     * Get documents with routing, split into chunks sent concurrently
+     *
+     * @param clazz              class of the documents
+     * @param keys               id and routing of each document
+     * @param fetchSourceContext source filtering, null to fetch the whole source
+     * @return get response of each key in input order, null if not exist
+     */
+    private GetResponse[] multiGet(Class clazz, List<DocumentKey> keys, @Nullable FetchSourceContext fetchSourceContext) {
+        OsemActionFuture<GetResponse[]> future = new OsemActionFuture<GetResponse[]>();
+        multiGetAsync(clazz, getIndexName(), keys, fetchSourceContext, future);
+        return future.actionGet();
+    }
+
+    /**
+     * Get documents with routing without waiting, split into chunks sent concurrently. Whole sources are put in near
+     * cache.
+     *
+     * @param clazz              class of the documents
+     * @param indexName          index of the documents
+     * @param keys               id and routing of each document
+     * @param fetchSourceContext source filtering, null to fetch the whole source
+     * @param listener           called on a listener thread with the get response of each key in input order, null if
+     *                           not exist
+     */
+    void multiGetAsync(final Class clazz, final String indexName, final List<DocumentKey> keys,
+                       @Nullable final FetchSourceContext fetchSourceContext, final ActionListener<GetResponse[]> listener) {
+        final String typeName = MappingProcessor.getIndexTypeName(clazz);
+        int chunkSize = multiGetChunkSize;
+        if (logger.isDebugEnabled()) {
+            logger.debug("Get objects by keys, class: {}, type: {}, keys: {}, chunk size: {}", clazz.getSimpleName(), typeName, keys.size(), chunkSize);
+        }
+        final GetResponse[] results = new GetResponse[keys.size()];
+        if (keys.isEmpty()) {
+            listener.onResponse(results);
+            return;
+        }
+        final AtomicInteger remaining = new AtomicInteger((keys.size() + chunkSize - 1) / chunkSize);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int from = 0; from < keys.size(); from += chunkSize) {
+            final int offset = from;
+            MultiGetRequestBuilder multiGetRequest = client.prepareMultiGet().setListenerThreaded(true);
+            for (DocumentKey key : keys.subList(from, Math.min(from + chunkSize, keys.size()))) {
+                MultiGetRequest.Item item = new MultiGetRequest.Item(indexName, typeName, key.getId()).routing(key.getRouting());
+                if (fetchSourceContext != null) {
+                    item.fetchSourceContext(fetchSourceContext);
+                }
+                multiGetRequest.add(item);
+            }
+            multiGetRequest.execute(new ActionListener<MultiGetResponse>() {
+                @Override
+                public void onResponse(MultiGetResponse responses) {
+                    try {
+                        int index = offset;
+                        for (MultiGetItemResponse response : responses) {
+                            if (response.isFailed()) {
+                                throw new ElasticSearchOsemException("Failed to get object, type: " + typeName + ", id: "
+                                        + response.getId() + ", reason: " + response.getFailure().getMessage());
+                            }
+                            if (response.getResponse().isExists()) {
+                                results[index] = response.getResponse();
+                                if (fetchSourceContext == null) {
+                                    nearCache.putRead(clazz, indexName, response.getId(), keys.get(index).getRouting(),
+                                            response.getResponse().getSourceAsBytesRef(), response.getResponse().getVersion());
+                                }
+                            }
+                            index++;
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                    chunkDone();
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    failure.compareAndSet(null, e);
+                    chunkDone();
+                }
+
+                private void chunkDone() {
+                    if (remaining.decrementAndGet() > 0) {
+                        return;
+                    }
+                    if (failure.get() != null) {
+                        listener.onFailure(failure.get());
+                    } else {
+                        listener.onResponse(results);
+                    }
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,328 @@
+package com.github.kzwang.osem.impl;
+
+import com.github.kzwang.osem.cache.NearCache;
+import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import com.github.kzwang.osem.processor.DocumentKey;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Preconditions;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.collect.Lists;
+import org.elasticsearch.common.collect.Maps;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.util.concurrent.ListenableFuture;
+import org.elasticsearch.common.util.concurrent.MoreExecutors;
+import org.elasticsearch.common.util.concurrent.SettableFuture;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coalesces concurrent get by id calls into multi gets.
+ * <p/>
+ * Gets of the same class and index are collected for up to {@code maxDelayMillis} or until {@code maxBatchSize} distinct ids are
+ * waiting, then sent as one multi get without blocking the calling or the flushing thread. A get for an id that is
+ * already waiting or in flight shares its source instead of being sent again, every caller still gets its own object.
+ * Near cache hits are returned without batching. The index name of the searcher is read when a get is added, so a
+ * batch is never sent to an index set after its gets.
+ */
+public class GetByIdBatcher {
+
+    private static final ESLogger logger = Loggers.getLogger(GetByIdBatcher.class);
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 2;
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+    private final ElasticSearchSearcherImpl searcher;
+
+    private final ScheduledExecutorService executor;
+
+    private final int maxBatchSize;
+
+    private final long maxDelayMillis;
+
+    private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    /**
+     * Batch still collecting gets, per class and index. Guarded by this
+     */
+    private final Map<BatchKey, Batch> pending = Maps.newHashMap();
+
+    /**
+     * Get response of every waiting or in flight get, per class and index and key, null if not exist. Guarded by this
+     */
+    private final Map<BatchKey, Map<DocumentKey, SettableFuture<GetResponse>>> inFlight = Maps.newHashMap();
+
+    /**
+     * @param searcher searcher sending the multi gets
+     * @param executor executor flushing and sending the batches, not shut down by this class
+     */
+    public GetByIdBatcher(ElasticSearchSearcherImpl searcher, ScheduledExecutorService executor) {
+        this(searcher, executor, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * @param searcher       searcher sending the multi gets
+     * @param executor       executor flushing and sending the batches, not shut down by this class
+     * @param maxBatchSize   max number of distinct ids in one batch, a full batch is sent at once
+     * @param maxDelayMillis max time the first get of a batch waits for others
+     */
+    public GetByIdBatcher(ElasticSearchSearcherImpl searcher, ScheduledExecutorService executor, int maxBatchSize, long maxDelayMillis) {
+        Preconditions.checkNotNull(searcher, "searcher must not be null");
+        Preconditions.checkNotNull(executor, "executor must not be null");
+        Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+        Preconditions.checkArgument(maxDelayMillis >= 0, "maxDelayMillis must not be negative");
+        this.searcher = searcher;
+        this.executor = executor;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Set max time the blocking {@link #getById(Class, String, String)} waits for its batch
+     *
+     * @param timeoutMillis timeout in milliseconds
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        Preconditions.checkArgument(timeoutMillis > 0, "timeoutMillis must be positive");
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Get object by id, waiting for the batch it is sent in
+     *
+     * @param clazz class of the object
+     * @param id    id of the object
+     * @return object, null if not exist
+     */
+    public <T> T getById(Class<T> clazz, String id) {
+        return getById(clazz, id, null);
+    }
+
+    /**
+     * Get object by id and routing, waiting for the batch it is sent in up to {@link #getTimeoutMillis()}
+     *
+     * @param clazz   class of the object
+     * @param id      id of the object
+     * @param routing routing of the object, null if not routed
+     * @return object, null if not exist
+     */
+    public <T> T getById(Class<T> clazz, String id, @Nullable String routing) {
+        try {
+            return getByIdAsync(clazz, id, routing).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ElasticSearchOsemException("Timed out after " + timeoutMillis + "ms getting object by id: " + id, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ElasticSearchOsemException("Interrupted while getting object by id: " + id, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ElasticSearchOsemException("Failed to get object by id: " + id, e.getCause());
+        }
+    }
+
+    /**
+     * Get object by id and routing without waiting
+     *
+     * @param clazz   class of the object
+     * @param id      id of the object
+     * @param routing routing of the object, null if not routed
+     * @return future of the object, completed with null if not exist
+     */
+    public <T> ListenableFuture<T> getByIdAsync(Class<T> clazz, String id, @Nullable String routing) {
+        String indexName = searcher.getIndexName();
+        NearCache nearCache = searcher.getNearCache();
+        NearCache.Entry entry = nearCache.get(clazz, indexName, id, routing);
+        if (entry != null) {
+            SettableFuture<T> future = SettableFuture.create();
+            future.set(entry.isDeleted() ? null : toObject(clazz, entry.getSource(), entry.getVersion()));
+            return future;
+        }
+
+        BatchKey batchKey = new BatchKey(clazz, indexName);
+        DocumentKey key = new DocumentKey(id, routing);
+        SettableFuture<GetResponse> response;
+        Batch created = null;
+        Batch full = null;
+        synchronized (this) {
+            Map<DocumentKey, SettableFuture<GetResponse>> batchInFlight = inFlight.get(batchKey);
+            if (batchInFlight == null) {
+                batchInFlight = Maps.newHashMap();
+                inFlight.put(batchKey, batchInFlight);
+            }
+            response = batchInFlight.get(key);
+            if (response == null) {  // otherwise same id is already waiting or in flight
+                response = SettableFuture.create();
+                batchInFlight.put(key, response);
+
+                Batch batch = pending.get(batchKey);
+                if (batch == null) {
+                    batch = new Batch(batchKey);
+                    pending.put(batchKey, batch);
+                    created = batch;
+                }
+                batch.keys.add(key);
+                batch.responses.add(response);
+                if (batch.keys.size() >= maxBatchSize) {
+                    pending.remove(batchKey);
+                    full = batch;
+                }
+            }
+        }
+        if (full != null) {
+            send(full);
+        } else if (created != null) {
+            scheduleFlush(created);
+        }
+        return toObject(clazz, response);
+    }
+
+    /**
+     * Deserialize the response once it arrived, into an object only returned to this caller
+     */
+    private <T> ListenableFuture<T> toObject(final Class<T> clazz, final ListenableFuture<GetResponse> response) {
+        final SettableFuture<T> future = SettableFuture.create();
+        response.addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    GetResponse getResponse = response.get();
+                    future.set(getResponse != null ? toObject(clazz, getResponse.getSourceAsBytesRef(), getResponse.getVersion()) : null);
+                } catch (ExecutionException e) {
+                    future.setException(e.getCause());
+                } catch (Throwable e) {
+                    future.setException(e);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        return future;
+    }
+
+    private <T> T toObject(Class<T> clazz, BytesReference source, long version) {
+        T object = searcher.getObjectProcessor().fromJsonBytes(source, clazz);
+        searcher.getObjectProcessor().setVersion(object, version);
+        return object;
+    }
+
+    private void scheduleFlush(final Batch batch) {
+        try {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (removePending(batch)) {
+                        send(batch);
+                    }
+                }
+            }, maxDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            if (removePending(batch)) {
+                done(batch, null, e);
+            }
+        }
+    }
+
+    /**
+     * @return false if batch was already sent as a full batch
+     */
+    private synchronized boolean removePending(Batch batch) {
+        if (pending.get(batch.key) != batch) {
+            return false;
+        }
+        pending.remove(batch.key);
+        return true;
+    }
+
+    private void send(final Batch batch) {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Send batch of {} gets, class: {}, index: {}", batch.keys.size(), batch.key.clazz.getSimpleName(), batch.key.indexName);
+        }
+        try {
+            searcher.multiGetAsync(batch.key.clazz, batch.key.indexName, batch.keys, null, new ActionListener<GetResponse[]>() {
+                @Override
+                public void onResponse(GetResponse[] responses) {
+                    done(batch, responses, null);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    done(batch, null, e);
+                }
+            });
+        } catch (Throwable e) {
+            done(batch, null, e);
+        }
+    }
+
+    private void done(Batch batch, @Nullable GetResponse[] responses, @Nullable Throwable failure) {
+        synchronized (this) {
+            Map<DocumentKey, SettableFuture<GetResponse>> batchInFlight = inFlight.get(batch.key);
+            for (DocumentKey key : batch.keys) {
+                batchInFlight.remove(key);
+            }
+            if (batchInFlight.isEmpty()) {
+                inFlight.remove(batch.key);
+            }
+        }
+        for (int i = 0; i < batch.responses.size(); i++) {
+            if (failure != null) {
+                batch.responses.get(i).setException(failure);
+            } else {
+                batch.responses.get(i).set(responses[i]);
+            }
+        }
+    }
+
+    private static class BatchKey {
+
+        private final Class clazz;
+
+        private final String indexName;
+
+        private BatchKey(Class clazz, String indexName) {
+            this.clazz = clazz;
+            this.indexName = indexName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            BatchKey batchKey = (BatchKey) o;
+            return clazz.equals(batchKey.clazz) && indexName.equals(batchKey.indexName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * clazz.hashCode() + indexName.hashCode();
+        }
+    }
+
+    private static class Batch {
+
+        private final BatchKey key;
+
+        private final List<DocumentKey> keys = Lists.newArrayList();
+
+        private final List<SettableFuture<GetResponse>> responses = Lists.newArrayList();
+
+        private Batch(BatchKey key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.kzwang.osem.impl;
+
+import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.support.PlainListenableActionFuture;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.UncategorizedExecutionException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Future completed by OSEM after its own handling of a response, listeners run on the thread completing it.
+ * <p/>
+ * {@link ElasticSearchOsemException} failures are thrown as is by {@code actionGet}, instead of being wrapped in
+ * {@link UncategorizedExecutionException}.
+ */
+class OsemActionFuture<T> extends PlainListenableActionFuture<T> {
+
+    OsemActionFuture() {
+        super(false, null);
+    }
+
+    @Override
+    public T actionGet() throws ElasticsearchException {
+        try {
+            return super.actionGet();
+        } catch (UncategorizedExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    @Override
+    public T actionGet(String timeout) throws ElasticsearchException {
+        try {
+            return super.actionGet(timeout);
+        } catch (UncategorizedExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    @Override
+    public T actionGet(long timeoutMillis) throws ElasticsearchException {
+        try {
+            return super.actionGet(timeoutMillis);
+        } catch (UncategorizedExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    @Override
+    public T actionGet(TimeValue timeout) throws ElasticsearchException {
+        try {
+            return super.actionGet(timeout);
+        } catch (UncategorizedExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    @Override
+    public T actionGet(long timeout, TimeUnit unit) throws ElasticsearchException {
+        try {
+            return super.actionGet(timeout, unit);
+        } catch (UncategorizedExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static RuntimeException unwrap(UncategorizedExecutionException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ElasticSearchOsemException) {
+                return (ElasticSearchOsemException) cause;
+            }
+        }
+        return e;
+    }
+}
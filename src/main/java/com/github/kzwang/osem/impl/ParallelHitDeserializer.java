@@ -0,0 +1,126 @@
+package com.github.kzwang.osem.impl;
+
+import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import org.elasticsearch.common.Preconditions;
+import org.elasticsearch.common.collect.Lists;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.search.SearchHit;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Deserializes the hits of large search pages in parallel chunks on an executor, the order of hits is preserved.
+ * <p/>
+ * The number of chunks adapts to the page: it grows with the number of hits, up to the parallelism, and small pages
+ * stay on the calling thread. Sources are not read to decide it, as reading a compressed source decompresses it on
+ * the calling thread. The calling thread always converts the first chunk itself.
+ */
+public class ParallelHitDeserializer {
+
+    private static final ESLogger logger = Loggers.getLogger(ParallelHitDeserializer.class);
+
+    public static final int DEFAULT_MIN_HITS_PER_CHUNK = 32;
+
+    private final ExecutorService executor;
+
+    private final int parallelism;
+
+    private final int minHitsPerChunk;
+
+    /**
+     * @param executor    executor running the chunks, not shut down by this class
+     * @param parallelism max number of chunks per page, including the one on the calling thread
+     */
+    public ParallelHitDeserializer(ExecutorService executor, int parallelism) {
+        this(executor, parallelism, DEFAULT_MIN_HITS_PER_CHUNK);
+    }
+
+    /**
+     * @param executor        executor running the chunks, not shut down by this class
+     * @param parallelism     max number of chunks per page, including the one on the calling thread
+     * @param minHitsPerChunk min number of hits in each chunk
+     */
+    public ParallelHitDeserializer(ExecutorService executor, int parallelism, int minHitsPerChunk) {
+        Preconditions.checkNotNull(executor, "executor must not be null");
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+        Preconditions.checkArgument(minHitsPerChunk > 0, "minHitsPerChunk must be positive");
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.minHitsPerChunk = minHitsPerChunk;
+    }
+
+    /**
+     * Get the number of chunks for hits, 1 means converting on the calling thread
+     *
+     * @param hits hits of a search page
+     * @return number of chunks
+     */
+    public int getChunkCount(SearchHit[] hits) {
+        return Math.max(Math.min(parallelism, hits.length / minHitsPerChunk), 1);
+    }
+
+    /**
+     * Convert the hits, in parallel if the page is large enough
+     *
+     * @param hits      hits of a search page
+     * @param converter converts the source of a hit, must be thread safe
+     * @return converted objects in hit order
+     */
+    <T> List<T> convert(final SearchHit[] hits, final SearchResultImpl.SourceConverter<T> converter) {
+        int chunks = getChunkCount(hits);
+        final Object[] objects = new Object[hits.length];
+        if (chunks == 1) {
+            convert(hits, converter, objects, 0, hits.length);
+        } else {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Convert {} hits in {} chunks", hits.length, chunks);
+            }
+            int chunkSize = (hits.length + chunks - 1) / chunks;
+            List<Future<?>> futures = Lists.newArrayListWithCapacity(chunks - 1);
+            for (int from = chunkSize; from < hits.length; from += chunkSize) {
+                final int start = from;
+                final int end = Math.min(from + chunkSize, hits.length);
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        convert(hits, converter, objects, start, end);
+                        return null;
+                    }
+                }));
+            }
+            try {
+                convert(hits, converter, objects, 0, Math.min(chunkSize, hits.length));  // first chunk on calling thread
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ElasticSearchOsemException("Interrupted while converting hits", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new ElasticSearchOsemException("Failed to convert hits", e.getCause());
+            } finally {
+                for (Future<?> future : futures) {
+                    future.cancel(false);
+                }
+            }
+        }
+        @SuppressWarnings("unchecked")
+        List<T> results = (List<T>) Lists.newArrayList(Arrays.asList(objects));
+        return results;
+    }
+
+    private static <T> void convert(SearchHit[] hits, SearchResultImpl.SourceConverter<T> converter, Object[] objects, int start, int end) {
+        for (int i = start; i < end; i++) {
+            objects[i] = converter.convert(hits[i]);
+        }
+    }
+}
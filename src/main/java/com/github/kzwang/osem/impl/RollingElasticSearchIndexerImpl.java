@@ -0,0 +1,312 @@
+package com.github.kzwang.osem.impl;
+
+import com.github.kzwang.osem.cache.CacheType;
+import com.github.kzwang.osem.cache.MappingKey;
+import com.github.kzwang.osem.cache.OsemCache;
+import com.github.kzwang.osem.converter.DateFormatters;
+import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import com.github.kzwang.osem.processor.MappingProcessor;
+import com.github.kzwang.osem.processor.OsemClassModel;
+import com.github.kzwang.osem.processor.OsemContext;
+import com.github.kzwang.osem.rolling.RollingIndexPattern;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexResponse;
+import org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
+import org.elasticsearch.action.admin.indices.template.delete.DeleteIndexTemplateResponse;
+import org.elasticsearch.action.admin.indices.template.put.PutIndexTemplateRequestBuilder;
+import org.elasticsearch.action.admin.indices.template.put.PutIndexTemplateResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.collect.Lists;
+import org.elasticsearch.common.collect.Maps;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.indices.IndexAlreadyExistsException;
+import org.elasticsearch.indices.IndexTemplateMissingException;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Indexer writing each document to a time based index derived from {@link com.github.kzwang.osem.annotations.Indexable#timestampFieldPath()},
+ * e.g. a tweet of 2014-01-31 goes to "tweets-2014.01.31" with pattern "tweets-yyyy.MM.dd".
+ * <p/>
+ * Mappings are put as index templates matching all indices of the pattern, indices are created on demand by the
+ * first write. Bulk requests stay a single request with each item targeting its own index. Old data is dropped by
+ * deleting whole indices with {@link #deleteIndicesBefore(java.util.Date)}.
+ * <p/>
+ * {@link #getIndexName()} is the wildcard of the pattern, so refresh and delete by query work on all indices. Delete index
+ * and put mapping only touch the existing indices matching the pattern, not other indices sharing its prefix.
+ * {@link #setIndexName(String)} takes a pattern, e.g. "tweets-yyyy.MM.dd".
+ */
+public class RollingElasticSearchIndexerImpl extends ElasticSearchIndexerImpl {
+
+    private static final ESLogger logger = Loggers.getLogger(RollingElasticSearchIndexerImpl.class);
+
+    private volatile RollingIndexPattern pattern;
+
+    private final ConcurrentMap<String, String> templates = Maps.newConcurrentMap();  // type name -> template mapping
+
+    public RollingElasticSearchIndexerImpl(Client client, RollingIndexPattern pattern) {
+        this(client, pattern, OsemContext.getInstance());
+    }
+
+    public RollingElasticSearchIndexerImpl(Client client, RollingIndexPattern pattern, OsemContext context) {
+        super(client, pattern.getWildcard(), context);
+        this.pattern = pattern;
+    }
+
+    public RollingIndexPattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Switch to another pattern, templates of the old pattern are kept on the server
+     *
+     * @param indexName pattern of the index names, see {@link RollingIndexPattern#forPattern(String)}
+     */
+    @Override
+    public void setIndexName(String indexName) {
+        RollingIndexPattern newPattern = RollingIndexPattern.forPattern(indexName);
+        removeCachedMappings();
+        templates.clear();
+        pattern = newPattern;
+        super.setIndexName(newPattern.getWildcard());
+    }
+
+    @Override
+    protected String getIndexName(Object object) {
+        OsemClassModel classModel = OsemClassModel.of(object.getClass());
+        if (!classModel.hasTimestamp()) {
+            throw new ElasticSearchOsemException("Class " + object.getClass().getSimpleName() + " has no timestampFieldPath");
+        }
+        Object timestamp = classModel.getTimestamp(object);
+        if (timestamp instanceof Date) {
+            return pattern.getIndexName((Date) timestamp);
+        } else if (timestamp instanceof Number) {
+            return pattern.getIndexName(((Number) timestamp).longValue());
+        } else if (timestamp instanceof String) {
+            String format = classModel.getIndexable().timestampFieldFormat();
+            long millis = DateFormatters.forPattern(format.isEmpty() ? "dateOptionalTime" : format).parser().parseMillis((String) timestamp);
+            return pattern.getIndexName(millis);
+        }
+        throw new ElasticSearchOsemException("Unable to find timestamp of object, type: " + classModel.getIndexTypeName());
+    }
+
+    /**
+     * Put the mapping of the class as index template for all indices of the pattern
+     *
+     * @param clazz class of the mapping
+     * @return put template response
+     */
+    public PutIndexTemplateResponse putTemplate(Class clazz) {
+        return putTemplate(clazz, MappingProcessor.getMappingAsJson(clazz));
+    }
+
+    public PutIndexTemplateResponse putTemplate(Class clazz, String mapping) {
+        String typeName = MappingProcessor.getIndexTypeName(clazz);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Put template for class: {}, type: {}, pattern: {}", clazz.getSimpleName(), typeName, pattern);
+        }
+        PutIndexTemplateResponse response = prepareTemplate(typeName, mapping).get();
+        templates.put(typeName, mapping);
+        return response;
+    }
+
+    private PutIndexTemplateRequestBuilder prepareTemplate(String typeName, String mapping) {
+        return getClient().admin().indices().preparePutTemplate(getTemplateName(typeName))
+                .setTemplate(pattern.getWildcard()).addMapping(typeName, mapping);
+    }
+
+    /**
+     * Delete the index template of the class, existing indices are not changed
+     *
+     * @param clazz class of the mapping
+     * @return delete template response, null if template not exist
+     */
+    public DeleteIndexTemplateResponse deleteTemplate(Class clazz) {
+        String typeName = MappingProcessor.getIndexTypeName(clazz);
+        templates.remove(typeName);
+        try {
+            return getClient().admin().indices().prepareDeleteTemplate(getTemplateName(typeName)).get();
+        } catch (IndexTemplateMissingException e) {
+            return null;
+        }
+    }
+
+    private String getTemplateName(String typeName) {
+        return (pattern.getPrefix() + typeName).toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    protected String loadMapping(String indexName, Class clazz, String typeName) {
+        if (!templates.containsKey(typeName)) {
+            putTemplate(clazz);
+        }
+        if (!getClient().admin().indices().prepareExists(indexName).get().isExists()) {
+            logger.debug("Create index: {}", indexName);
+            try {
+                getClient().admin().indices().prepareCreate(indexName).get();  // mapping comes from template
+            } catch (IndexAlreadyExistsException e) {
+                logger.debug("Index {} created by another writer", indexName);
+            }
+        }
+        return super.loadMapping(indexName, clazz, typeName);
+    }
+
+    /**
+     * Non blocking version of {@link #loadMapping(String, Class, String)}: put the template if not done yet, create the
+     * index, then get or put the mapping
+     */
+    @Override
+    protected void loadMappingAsync(final String indexName, final Class clazz, final String typeName, final ActionListener<String> listener) {
+        if (templates.containsKey(typeName)) {
+            createIndexAsync(indexName, clazz, typeName, listener);
+            return;
+        }
+        final String mapping;
+        try {
+            mapping = MappingProcessor.getMappingAsJson(clazz);
+        } catch (Throwable e) {
+            listener.onFailure(e);
+            return;
+        }
+        prepareTemplate(typeName, mapping).execute(new ActionListener<PutIndexTemplateResponse>() {
+            @Override
+            public void onResponse(PutIndexTemplateResponse response) {
+                templates.put(typeName, mapping);
+                createIndexAsync(indexName, clazz, typeName, listener);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    private void createIndexAsync(final String indexName, final Class clazz, final String typeName, final ActionListener<String> listener) {
+        getClient().admin().indices().prepareCreate(indexName).execute(new ActionListener<CreateIndexResponse>() {
+            @Override
+            public void onResponse(CreateIndexResponse response) {
+                logger.debug("Created index: {}", indexName);
+                RollingElasticSearchIndexerImpl.super.loadMappingAsync(indexName, clazz, typeName, listener);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                if (ExceptionsHelper.unwrapCause(e) instanceof IndexAlreadyExistsException) {
+                    RollingElasticSearchIndexerImpl.super.loadMappingAsync(indexName, clazz, typeName, listener);
+                } else {
+                    listener.onFailure(e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public PutMappingResponse putMapping(Class clazz, String mapping) {
+        putTemplate(clazz, mapping);
+        String[] indexNames = getPatternIndices();
+        PutMappingResponse response = null;
+        if (indexNames.length > 0) {
+            response = getClient().admin().indices().preparePutMapping(indexNames)
+                    .setType(MappingProcessor.getIndexTypeName(clazz)).setSource(mapping).get();
+        }
+        removeCachedMappings();
+        return response;
+    }
+
+    @Override
+    public boolean indexExist() {
+        return getPatternIndices().length > 0;
+    }
+
+    @Override
+    public void ensureMappings(Map<Class, String> mappings) {
+        for (Map.Entry<Class, String> entry : mappings.entrySet()) {
+            putTemplate(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Indices are created on demand when documents are written
+     *
+     * @return null
+     */
+    @Override
+    public CreateIndexResponse createIndex() {
+        logger.debug("Indices of {} are created on demand", pattern);
+        return null;
+    }
+
+    /**
+     * Delete all indices of the pattern, other indices sharing the prefix are kept
+     *
+     * @return delete index response, null if no index to delete
+     */
+    @Override
+    public DeleteIndexResponse deleteIndex() {
+        return deleteIndices(Lists.newArrayList(getPatternIndices()));
+    }
+
+    /**
+     * Delete all indices of the pattern which only contain documents before the date
+     *
+     * @param date documents before this date are deleted
+     * @return delete index response, null if no index to delete
+     */
+    public DeleteIndexResponse deleteIndicesBefore(Date date) {
+        List<String> indexNames = Lists.newArrayList();
+        for (String indexName : getPatternIndices()) {
+            Date end = pattern.getEnd(indexName);
+            if (end != null && !end.after(date)) {
+                indexNames.add(indexName);
+            }
+        }
+        return deleteIndices(indexNames);
+    }
+
+    /**
+     * @return existing indices matching the pattern
+     */
+    private String[] getPatternIndices() {
+        String[] allIndices = getClient().admin().cluster().prepareState().setRoutingTable(false).setNodes(false)
+                .setBlocks(false).get().getState().getMetaData().concreteAllIndices();
+        List<String> indexNames = Lists.newArrayList();
+        for (String indexName : allIndices) {
+            if (pattern.matches(indexName)) {
+                indexNames.add(indexName);
+            }
+        }
+        return indexNames.toArray(new String[indexNames.size()]);
+    }
+
+    private DeleteIndexResponse deleteIndices(List<String> indexNames) {
+        if (indexNames.isEmpty()) {
+            return null;
+        }
+        logger.debug("Delete indices: {}", indexNames);
+        DeleteIndexResponse response = getClient().admin().indices()
+                .prepareDelete(indexNames.toArray(new String[indexNames.size()])).get();
+        for (String indexName : indexNames) {
+            removeCachedMappings(indexName);
+        }
+        getNearCache().clear();
+        return response;
+    }
+
+    private void removeCachedMappings() {
+        OsemCache cache = OsemCache.getInstance();
+        for (Object key : cache.getSubCache(CacheType.MAPPING).asMap().keySet()) {
+            String indexName = key instanceof MappingKey ? ((MappingKey) key).getIndexName() : null;
+            if (indexName != null && pattern.matches(indexName)) {
+                cache.removeCache(CacheType.MAPPING, key);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.github.kzwang.osem.impl;
+
+import com.github.kzwang.osem.api.ScrollIterator;
+import com.github.kzwang.osem.processor.ObjectProcessor;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ListenableActionFuture;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * {@link ScrollIterator} which requests the next scroll page as soon as the current page arrives,
+ * so the next page is on its way while the current one is deserialized. At most two pages are held in memory.
+ */
+public class ScrollIteratorImpl<T> implements ScrollIterator<T> {
+
+    private static final ESLogger logger = Loggers.getLogger(ScrollIteratorImpl.class);
+
+    private static final SearchHit[] EMPTY_HITS = new SearchHit[0];
+
+    private final Client client;
+
+    private final Class<T> clazz;
+
+    private final TimeValue keepAlive;
+
+    private final ObjectProcessor objectProcessor;
+
+    private final long totalHits;
+
+    private String scrollId;
+
+    private ListenableActionFuture<SearchResponse> nextPage;
+
+    private SearchHit[] hits = EMPTY_HITS;
+
+    private int position = 0;
+
+    private boolean closed = false;
+
+    public ScrollIteratorImpl(Client client, Class<T> clazz, SearchResponse response, TimeValue keepAlive, ObjectProcessor objectProcessor) {
+        this.client = client;
+        this.clazz = clazz;
+        this.keepAlive = keepAlive;
+        this.objectProcessor = objectProcessor;
+        this.totalHits = response.getHits().getTotalHits();
+        this.scrollId = response.getScrollId();
+        // scan search returns no hits in the first response, only an empty scroll page means the end
+        this.hits = response.getHits().getHits();
+        if (totalHits == 0) {
+            close();
+        } else {
+            fetchNextPage();
+        }
+    }
+
+    @Override
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (position >= hits.length) {
+            if (closed) {
+                return false;
+            }
+            SearchResponse response;
+            try {
+                response = nextPage.actionGet();
+            } catch (RuntimeException e) {
+                nextPage = null;
+                close();
+                throw e;
+            }
+            nextPage = null;
+            if (response.getScrollId() != null) {
+                scrollId = response.getScrollId();
+            }
+            hits = response.getHits().getHits();
+            position = 0;
+            if (hits.length == 0) {
+                close();
+            } else {
+                fetchNextPage();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        SearchHit hit = hits[position];
+        hits[position++] = null;  // let the hit be collected while iterating the rest of the page
+        T object = objectProcessor.fromJsonBytes(hit.sourceRef(), clazz);
+        objectProcessor.setVersion(object, hit.getVersion());
+        return object;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove is not supported by scroll iterator");
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        hits = EMPTY_HITS;
+        position = 0;
+        if (nextPage != null) {
+            // clear the scroll once the pending page arrives, it may carry a newer scroll id
+            nextPage.addListener(new ActionListener<SearchResponse>() {
+                @Override
+                public void onResponse(SearchResponse response) {
+                    clearScroll(response.getScrollId() != null ? response.getScrollId() : scrollId);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    clearScroll(scrollId);
+                }
+            });
+            nextPage = null;
+        } else {
+            clearScroll(scrollId);
+        }
+    }
+
+    private void fetchNextPage() {
+        nextPage = client.prepareSearchScroll(scrollId).setScroll(keepAlive).execute();
+    }
+
+    private void clearScroll(final String id) {
+        if (id == null) {
+            return;
+        }
+        client.prepareClearScroll().addScrollId(id).execute(new ActionListener<ClearScrollResponse>() {
+            @Override
+            public void onResponse(ClearScrollResponse response) {
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                logger.warn("Failed to clear scroll [{}]", e, id);
+            }
+        });
+    }
+}
@@ -0,0 +1,180 @@
+package com.github.kzwang.osem.impl;
+
+import com.github.kzwang.osem.api.SearchResult;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.collect.Lists;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.highlight.HighlightField;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+
+public class SearchResultImpl<T> implements SearchResult<T> {
+
+    private final List<Hit<T>> hits;
+
+    private final List<T> objects;
+
+    private final long totalHits;
+
+    private final float maxScore;
+
+    private final long tookInMillis;
+
+    private final boolean timedOut;
+
+    SearchResultImpl(SearchResponse response, SourceConverter<T> converter) {
+        this(response, converter, null);
+    }
+
+    /**
+     * Convert the hits of the response, metadata of each hit is captured in the same pass
+     *
+     * @param response     search response
+     * @param converter    converts the source of a hit
+     * @param deserializer converts large pages in parallel, null to always convert on the calling thread
+     */
+    SearchResultImpl(SearchResponse response, SourceConverter<T> converter, @Nullable ParallelHitDeserializer deserializer) {
+        SearchHits searchHits = response.getHits();
+        SearchHit[] hitArray = searchHits != null && searchHits.getHits() != null ? searchHits.getHits() : new SearchHit[0];
+        List<T> objects = deserializer != null ? deserializer.convert(hitArray, converter)
+                : Lists.<T>newArrayListWithCapacity(hitArray.length);
+        boolean converted = deserializer != null;
+        List<Hit<T>> hits = Lists.newArrayListWithCapacity(hitArray.length);
+        for (int i = 0; i < hitArray.length; i++) {
+            SearchHit searchHit = hitArray[i];
+            T object;
+            if (converted) {
+                object = objects.get(i);
+            } else {
+                object = converter.convert(searchHit);
+                objects.add(object);
+            }
+            hits.add(new HitImpl<T>(object, searchHit));
+        }
+        this.hits = hits;
+        this.objects = objects;
+        this.totalHits = searchHits != null ? searchHits.getTotalHits() : 0;
+        this.maxScore = searchHits != null ? searchHits.getMaxScore() : Float.NaN;
+        this.tookInMillis = response.getTookInMillis();
+        this.timedOut = response.isTimedOut();
+    }
+
+    /**
+     * Converts the source of a search hit to an object
+     */
+    interface SourceConverter<T> {
+        T convert(SearchHit hit);
+    }
+
+    @Override
+    public List<Hit<T>> getHits() {
+        return hits;
+    }
+
+    @Override
+    public List<T> getObjects() {
+        return objects;
+    }
+
+    @Override
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    @Override
+    public float getMaxScore() {
+        return maxScore;
+    }
+
+    @Override
+    public long getTookInMillis() {
+        return tookInMillis;
+    }
+
+    @Override
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return objects.iterator();
+    }
+
+    private static class HitImpl<T> implements Hit<T> {
+
+        private final T object;
+
+        private final String index;
+
+        private final String type;
+
+        private final String id;
+
+        private final float score;
+
+        private final long version;
+
+        private final Object[] sortValues;
+
+        private final Map<String, HighlightField> highlightFields;
+
+        private HitImpl(T object, SearchHit hit) {
+            this.object = object;
+            this.index = hit.getIndex();
+            this.type = hit.getType();
+            this.id = hit.getId();
+            this.score = hit.getScore();
+            this.version = hit.getVersion();
+            this.sortValues = hit.getSortValues();
+            Map<String, HighlightField> highlightFields = hit.getHighlightFields();
+            this.highlightFields = highlightFields != null ? highlightFields : Collections.<String, HighlightField>emptyMap();
+        }
+
+        @Override
+        public T getObject() {
+            return object;
+        }
+
+        @Override
+        public String getIndex() {
+            return index;
+        }
+
+        @Override
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public float getScore() {
+            return score;
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public Object[] getSortValues() {
+            return sortValues;
+        }
+
+        @Override
+        public Map<String, HighlightField> getHighlightFields() {
+            return highlightFields;
+        }
+    }
+}
@@ -1,12 +1,24 @@
 package com.github.kzwang.osem.inject;
 
 
+import com.github.kzwang.osem.processor.OsemContext;
 import org.elasticsearch.common.inject.AbstractModule;
 
 public class ElasticSearchOsemModule extends AbstractModule {
 
+    private final OsemContext context;
+
+    public ElasticSearchOsemModule() {
+        this(OsemContext.getInstance());
+    }
+
+    public ElasticSearchOsemModule(OsemContext context) {
+        this.context = context;
+    }
+
     @Override
     protected void configure() {
+        bind(OsemContext.class).toInstance(context);
     }
 
 
@@ -0,0 +1,47 @@
+package com.github.kzwang.osem.jackson;
+
+import com.fasterxml.jackson.databind.Module;
+import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+
+/**
+ * Optional Jackson Afterburner support, the module is only loaded by name so OSEM works without Afterburner on
+ * the class path
+ */
+public final class AfterburnerSupport {
+
+    private static final String AFTERBURNER_MODULE_CLASS = "com.fasterxml.jackson.module.afterburner.AfterburnerModule";
+
+    private AfterburnerSupport() {
+    }
+
+    /**
+     * @return true if Afterburner is on the class path
+     */
+    public static boolean isAvailable() {
+        try {
+            Class.forName(AFTERBURNER_MODULE_CLASS, false, AfterburnerSupport.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Create the Afterburner module. It must be registered after {@link JacksonElasticSearchOsemModule},
+     * Jackson calls the serializer modifier registered last first, so {@link OsemBeanSerializerModifier} still
+     * wraps the optimized writers of properties with custom null serializer.
+     *
+     * @return Afterburner module
+     */
+    public static Module newModule() {
+        try {
+            return (Module) Class.forName(AFTERBURNER_MODULE_CLASS, true, AfterburnerSupport.class.getClassLoader()).newInstance();
+        } catch (Exception e) {
+            throw new ElasticSearchOsemException("Failed to create Afterburner module", e);
+        } catch (LinkageError e) {
+            throw new ElasticSearchOsemException("Failed to create Afterburner module", e);
+        }
+    }
+}
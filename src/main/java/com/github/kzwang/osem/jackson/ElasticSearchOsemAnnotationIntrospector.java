@@ -1,23 +1,19 @@
 package com.github.kzwang.osem.jackson;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.PropertyName;
 import com.fasterxml.jackson.databind.introspect.*;
-import com.github.kzwang.osem.annotations.*;
-import com.github.kzwang.osem.converter.DateDeserializer;
-import com.github.kzwang.osem.converter.DateSerializer;
-import com.github.kzwang.osem.converter.RawJsonDeSerializer;
-
-import java.lang.reflect.ParameterizedType;
-import java.util.Collection;
-import java.util.Date;
+import com.github.kzwang.osem.annotations.Indexable;
+import com.github.kzwang.osem.processor.OsemClassModel;
+import com.github.kzwang.osem.processor.OsemPropertyModel;
 
 
 /**
  * Override {@link JacksonAnnotationIntrospector} to read OSEM annotations
+ * <p/>
+ * Annotations are read from the cached {@link OsemClassModel} of the declaring class instead of the members.
  */
 public class ElasticSearchOsemAnnotationIntrospector extends JacksonAnnotationIntrospector {
 
@@ -26,8 +22,7 @@ public class ElasticSearchOsemAnnotationIntrospector extends JacksonAnnotationIn
     public boolean hasIgnoreMarker(AnnotatedMember m) {
         if (!(m instanceof AnnotatedField) && !(m instanceof AnnotatedMethod)) return false;
 
-        return (m.getAnnotation(IndexableProperty.class) == null
-                && m.getAnnotation(IndexableComponent.class) == null && m.getAnnotation(IndexableProperties.class) == null);
+        return findProperty(m) == null;
     }
 
 
@@ -36,41 +31,15 @@ public class ElasticSearchOsemAnnotationIntrospector extends JacksonAnnotationIn
         if (!(a instanceof AnnotatedField) && !(a instanceof AnnotatedMethod)) {
             return super.findNameForSerialization(a);
         }
-
-        IndexableProperty property = a.getAnnotation(IndexableProperty.class);
-        if (property != null && !property.name().isEmpty()) {
-            return new PropertyName(property.name());
-        }
-
-        IndexableComponent component = a.getAnnotation(IndexableComponent.class);
-        if (component != null && !component.name().isEmpty()) {
-            return new PropertyName(component.name());
-        }
-
-        IndexableProperties properties = a.getAnnotation(IndexableProperties.class);
-        if (properties != null && !properties.name().isEmpty()) {
-            return new PropertyName(properties.name());
-        }
-
-        return PropertyName.USE_DEFAULT;
+        return findName(a);
     }
 
 
     @Override
     public JsonInclude.Include findSerializationInclusion(Annotated a, JsonInclude.Include defValue) {
-        IndexableProperty property = a.getAnnotation(IndexableProperty.class);
-        if (property != null && property.jsonInclude() != com.github.kzwang.osem.annotations.JsonInclude.DEFAULT) {
-            return JsonInclude.Include.valueOf(property.jsonInclude().toString());
-        }
-
-        IndexableComponent component = a.getAnnotation(IndexableComponent.class);
-        if (component != null && component.jsonInclude() != com.github.kzwang.osem.annotations.JsonInclude.DEFAULT) {
-            return JsonInclude.Include.valueOf(component.jsonInclude().toString());
-        }
-
-        IndexableProperties properties = a.getAnnotation(IndexableProperties.class);
-        if (properties != null && properties.jsonInclude() != com.github.kzwang.osem.annotations.JsonInclude.DEFAULT) {
-            return JsonInclude.Include.valueOf(properties.jsonInclude().toString());
+        OsemPropertyModel property = findProperty(a);
+        if (property != null && property.getJsonInclude() != null) {
+            return JsonInclude.Include.valueOf(property.getJsonInclude().toString());
         }
         return defValue;
     }
@@ -80,41 +49,24 @@ public class ElasticSearchOsemAnnotationIntrospector extends JacksonAnnotationIn
         if (!(a instanceof AnnotatedField) && !(a instanceof AnnotatedMethod)) {
             return super.findNameForDeserialization(a);
         }
-
-        IndexableProperty property = a.getAnnotation(IndexableProperty.class);
-        if (property != null && !property.name().isEmpty()) {
-            return new PropertyName(property.name());
-        }
-
-        IndexableComponent component = a.getAnnotation(IndexableComponent.class);
-        if (component != null && !component.name().isEmpty()) {
-            return new PropertyName(component.name());
-        }
-
-        IndexableProperties properties = a.getAnnotation(IndexableProperties.class);
-        if (properties != null && !properties.name().isEmpty()) {
-            return new PropertyName(properties.name());
-        }
-
-        return PropertyName.USE_DEFAULT;
+        return findName(a);
     }
 
-    private boolean isDate(Annotated annotated) {
-        Class clazz = annotated.getRawType();
-        if (Collection.class.isAssignableFrom(clazz)) {
-            ParameterizedType type = (ParameterizedType) annotated.getGenericType();
-            clazz = (Class) type.getActualTypeArguments()[0];
+    private PropertyName findName(Annotated a) {
+        OsemPropertyModel property = findProperty(a);
+        if (property != null && property.getExplicitName() != null) {
+            return new PropertyName(property.getExplicitName());
         }
-        return clazz.equals(Date.class);
+        return PropertyName.USE_DEFAULT;
     }
 
     @Override
     public Object findSerializer(Annotated a) {
-        Class clazz = a.getRawType();
-        if (Collection.class.isAssignableFrom(clazz)) {
+        OsemPropertyModel property = findProperty(a);
+        if (property != null && property.isCollection()) {
             return null;  // Collection should be handled in findContentSerializer(Annotated a)
         }
-        Object serializer = findSerializerToUse(a);
+        Object serializer = findSerializerToUse(a, property);
         if (serializer != null) {
             return serializer;
         }
@@ -122,40 +74,22 @@ public class ElasticSearchOsemAnnotationIntrospector extends JacksonAnnotationIn
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public Class<? extends JsonSerializer<?>> findContentSerializer(Annotated a) {
-        Class clazz = a.getRawType();
-        if (!Collection.class.isAssignableFrom(clazz)) {
-            return null;  // Only handle Collection
+        OsemPropertyModel property = findProperty(a);
+        if (property == null || !property.isCollection()) {
+            return super.findContentSerializer(a);  // Only handle Collection
         }
-        Object serializer = findSerializerToUse(a);
+        Object serializer = findSerializerToUse(a, property);
         if (serializer != null) {
             return (Class<? extends JsonSerializer<?>>) serializer;
         }
         return super.findContentSerializer(a);
     }
 
-    private Object findSerializerToUse(Annotated a) {
-        if (a instanceof AnnotatedField || a instanceof AnnotatedMethod) {
-            IndexableComponent indexableComponent = a.getAnnotation(IndexableComponent.class);
-            if (indexableComponent != null && indexableComponent.serializer() != JsonSerializer.class) {
-                return indexableComponent.serializer();
-            }
-
-            IndexableProperty indexableProperty = a.getAnnotation(IndexableProperty.class);
-            if (indexableProperty != null) {
-                if (indexableProperty.serializer() != JsonSerializer.class) {
-                    return indexableProperty.serializer();
-                }
-                if (isDate(a)) {  // use custom date serializer
-                    return DateSerializer.class;
-                }
-
-            }
-            IndexableProperties indexableProperties = a.getAnnotation(IndexableProperties.class);
-            if (indexableProperties != null && indexableProperties.serializer() != JsonSerializer.class) {
-                return indexableProperties.serializer();
-            }
-
+    private Object findSerializerToUse(Annotated a, OsemPropertyModel property) {
+        if (property != null) {
+            return property.getSerializer();
         } else if (a instanceof AnnotatedClass) {  // handle class
             Indexable indexable = a.getAnnotation(Indexable.class);
             if (indexable != null && indexable.serializer() != JsonSerializer.class) {
@@ -167,11 +101,11 @@ public class ElasticSearchOsemAnnotationIntrospector extends JacksonAnnotationIn
 
     @Override
     public Class<? extends JsonDeserializer<?>> findDeserializer(Annotated a) {
-        Class clazz = a.getRawType();
-        if (Collection.class.isAssignableFrom(clazz)) {
+        OsemPropertyModel property = findProperty(a);
+        if (property != null && property.isCollection()) {
             return null;  // Collection should be handled in findContentDeserializer(Annotated a)
         }
-        Class<? extends JsonDeserializer<?>> deserializer = findDeserializerToUse(a);
+        Class<? extends JsonDeserializer<?>> deserializer = findDeserializerToUse(a, property);
         if (deserializer != null) {
             return deserializer;
         }
@@ -181,41 +115,21 @@ public class ElasticSearchOsemAnnotationIntrospector extends JacksonAnnotationIn
 
     @Override
     public Class<? extends JsonDeserializer<?>> findContentDeserializer(Annotated a) {
-        Class clazz = a.getRawType();
-        if (!Collection.class.isAssignableFrom(clazz)) {
-            return null;  // Only handle Collection
+        OsemPropertyModel property = findProperty(a);
+        if (property == null || !property.isCollection()) {
+            return super.findContentDeserializer(a);  // Only handle Collection
         }
-        Class<? extends JsonDeserializer<?>> deserializer = findDeserializerToUse(a);
+        Class<? extends JsonDeserializer<?>> deserializer = findDeserializerToUse(a, property);
         if (deserializer != null) {
             return deserializer;
         }
         return super.findContentDeserializer(a);
     }
 
-    private Class<? extends JsonDeserializer<?>> findDeserializerToUse(Annotated a) {
-        if (a instanceof AnnotatedField || a instanceof AnnotatedMethod) {
-            IndexableComponent indexableComponent = a.getAnnotation(IndexableComponent.class);
-            if (indexableComponent != null && indexableComponent.deserializer() != JsonDeserializer.class) {
-                return (Class<? extends JsonDeserializer<?>>) indexableComponent.deserializer();
-            }
-
-            IndexableProperty indexableProperty = a.getAnnotation(IndexableProperty.class);
-            if (indexableProperty != null) {
-                if (indexableProperty.deserializer() != JsonDeserializer.class) {
-                    return (Class<? extends JsonDeserializer<?>>) indexableProperty.deserializer();
-                }
-                if (isDate(a)) { // use custom date deserializer
-                    return DateDeserializer.class;
-                }
-                if (indexableProperty.type().equals(TypeEnum.JSON)) {  // use custom deserializer for raw json field
-                    return RawJsonDeSerializer.class;
-                }
-            }
-
-            IndexableProperties indexableProperties = a.getAnnotation(IndexableProperties.class);
-            if (indexableProperties != null && indexableProperties.deserializer() != JsonDeserializer.class) {
-                return (Class<? extends JsonDeserializer<?>>) indexableProperties.deserializer();
-            }
+    @SuppressWarnings("unchecked")
+    private Class<? extends JsonDeserializer<?>> findDeserializerToUse(Annotated a, OsemPropertyModel property) {
+        if (property != null) {
+            return (Class<? extends JsonDeserializer<?>>) property.getDeserializer();
         } else if (a instanceof AnnotatedClass) {  // handle class
             Indexable indexable = a.getAnnotation(Indexable.class);
             if (indexable != null && indexable.deserializer() != JsonDeserializer.class) {
@@ -225,4 +139,11 @@ public class ElasticSearchOsemAnnotationIntrospector extends JacksonAnnotationIn
         return null;
     }
 
+    private static OsemPropertyModel findProperty(Annotated a) {
+        if (a instanceof AnnotatedField || a instanceof AnnotatedMethod) {
+            return OsemClassModel.findProperty(((AnnotatedMember) a).getMember());
+        }
+        return null;
+    }
+
 }
@@ -1,58 +0,0 @@
-package com.github.kzwang.osem.jackson;
-
-import com.fasterxml.jackson.core.JsonGenerationException;
-import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.SerializerProvider;
-import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
-import com.fasterxml.jackson.databind.ser.BeanSerializer;
-import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
-
-import java.io.IOException;
-
-
-/**
- * Override to use custom serializer for null value
- */
-public class OsemBeanSerializer extends BeanSerializer {
-
-
-    protected OsemBeanSerializer(BeanSerializerBase src) {
-        super(src);
-    }
-
-    @Override
-    protected void serializeFields(Object bean, JsonGenerator jgen, SerializerProvider provider) throws IOException, JsonGenerationException {
-        final BeanPropertyWriter[] props;
-        if (_filteredProps != null && provider.getActiveView() != null) {
-            props = _filteredProps;
-        } else {
-            props = _props;
-        }
-        int i = 0;
-        try {
-            for (final int len = props.length; i < len; ++i) {
-
-                if (props[i] != null) { // can have nulls in filtered list
-                    OsemBeanPropertyWriter prop = new OsemBeanPropertyWriter(props[i]);   // override to use own property writer
-                    prop.serializeAsField(bean, jgen, provider);
-                }
-            }
-            if (_anyGetterWriter != null) {
-                _anyGetterWriter.getAndSerialize(bean, jgen, provider);
-            }
-        } catch (Exception e) {
-            String name = (i == props.length) ? "[anySetter]" : props[i].getName();
-            wrapAndThrow(provider, e, bean, name);
-        } catch (StackOverflowError e) {
-            /* 04-Sep-2009, tatu: Dealing with this is tricky, since we do not
-             *   have many stack frames to spare... just one or two; can't
-             *   make many calls.
-             */
-            JsonMappingException mapE = new JsonMappingException("Infinite recursion (StackOverflowError)", e);
-            String name = (i == props.length) ? "[anySetter]" : props[i].getName();
-            mapE.prependPath(new JsonMappingException.Reference(bean, name));
-            throw mapE;
-        }
-    }
-}
@@ -3,20 +3,43 @@ package com.github.kzwang.osem.jackson;
 import com.fasterxml.jackson.databind.BeanDescription;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
 import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
-import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
+import com.fasterxml.jackson.databind.util.ClassUtil;
+import com.github.kzwang.osem.processor.OsemClassModel;
+import com.github.kzwang.osem.processor.OsemPropertyModel;
+
+import java.util.List;
 
 
 /**
  * Override to use custom serializer for null value
  */
 public class OsemBeanSerializerModifier extends BeanSerializerModifier {
+
     @Override
-    public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription beanDesc, JsonSerializer<?> serializer) {
-        if (serializer instanceof BeanSerializerBase) {
-            return new OsemBeanSerializer((BeanSerializerBase) serializer);
+    public List<BeanPropertyWriter> changeProperties(SerializationConfig config, BeanDescription beanDesc, List<BeanPropertyWriter> beanProperties) {
+        for (int i = 0; i < beanProperties.size(); i++) {
+            BeanPropertyWriter writer = beanProperties.get(i);
+            JsonSerializer<Object> customSerializer = findCustomSerializer(writer.getMember(), config.canOverrideAccessModifiers());
+            if (customSerializer != null) {
+                beanProperties.set(i, new OsemBeanPropertyWriter(writer, customSerializer));
+            }
         }
-        return serializer;
+        return beanProperties;
+    }
 
+    @SuppressWarnings("unchecked")
+    private JsonSerializer<Object> findCustomSerializer(AnnotatedMember member, boolean canFixAccess) {
+        if (member == null) {
+            return null;
+        }
+        OsemPropertyModel property = OsemClassModel.findProperty(member.getMember());
+        Class<? extends JsonSerializer> serializerClass = property != null ? property.getCustomSerializer() : null;
+        if (serializerClass == null) {
+            return null;
+        }
+        return (JsonSerializer<Object>) ClassUtil.createInstance(serializerClass, canFixAccess);
     }
 }
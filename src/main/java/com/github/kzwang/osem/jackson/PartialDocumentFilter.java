@@ -0,0 +1,55 @@
+package com.github.kzwang.osem.jackson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+
+import java.util.Set;
+
+
+/**
+ * Only write the given properties of the root object, nested objects are written as a whole
+ */
+public class PartialDocumentFilter extends SimpleBeanPropertyFilter {
+
+    /**
+     * Filter id returned for every class by the partial document mapper
+     */
+    public static final String FILTER_ID = "osem_partial_document";
+
+    private final Set<String> propertyNames;
+
+    public PartialDocumentFilter(Set<String> propertyNames) {
+        this.propertyNames = propertyNames;
+    }
+
+    @Override
+    public void serializeAsField(Object bean, JsonGenerator jgen, SerializerProvider provider, PropertyWriter writer) throws Exception {
+        if (!isRoot(jgen) || propertyNames.contains(writer.getName())) {
+            writer.serializeAsField(bean, jgen, provider);
+        }
+    }
+
+    @Override
+    public void serializeAsField(Object bean, JsonGenerator jgen, SerializerProvider provider, BeanPropertyWriter writer) throws Exception {
+        serializeAsField(bean, jgen, provider, (PropertyWriter) writer);
+    }
+
+    @Override
+    protected boolean include(BeanPropertyWriter writer) {
+        return true;
+    }
+
+    @Override
+    protected boolean include(PropertyWriter writer) {
+        return true;
+    }
+
+    private static boolean isRoot(JsonGenerator jgen) {
+        JsonStreamContext parent = jgen.getOutputContext().getParent();
+        return parent == null || parent.inRoot();
+    }
+}
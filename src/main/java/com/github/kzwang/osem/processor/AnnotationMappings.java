@@ -0,0 +1,669 @@
+package com.github.kzwang.osem.processor;
+
+import com.github.kzwang.osem.annotations.*;
+import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import com.google.common.base.CaseFormat;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.collect.Lists;
+import org.elasticsearch.common.collect.Maps;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentHelper;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+
+/**
+ * Convert OSEM annotations to mapping. Only works on annotation instances and names, so it can be used on classes
+ * at runtime and on source elements by the annotation processor at compile time
+ */
+public final class AnnotationMappings {
+
+    private static final ESLogger logger = Loggers.getLogger(AnnotationMappings.class);
+
+    private AnnotationMappings() {
+    }
+
+    /**
+     * Get the index type name
+     *
+     * @param simpleName simple name of the class
+     * @param indexable  annotation of the class, null if not indexable
+     * @return index type name
+     */
+    public static String getIndexTypeName(String simpleName, @Nullable Indexable indexable) {
+        String typeName = CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, simpleName);
+        if (indexable != null && indexable.name() != null && !indexable.name().isEmpty()) {
+            typeName = indexable.name();
+        }
+        return typeName;
+    }
+
+    /**
+     * Get the property name, annotation name has priority over java name
+     *
+     * @param annotationName name in annotation
+     * @param javaName       java name of the field, null for methods
+     * @param annotationType annotation type used in error message
+     * @return property name
+     */
+    public static String getPropertyName(String annotationName, @Nullable String javaName, Class annotationType) {
+        String fieldName = javaName;
+        if (annotationName != null && !annotationName.isEmpty()) {
+            fieldName = annotationName;
+        }
+        if (fieldName == null) {
+            throw new ElasticSearchOsemException("Unable to find field name for " + annotationType.getSimpleName());
+        }
+        return fieldName;
+    }
+
+    /**
+     * Convert mapping to json
+     *
+     * @param mapping map of the mapping
+     * @return mapping string
+     */
+    public static String toJson(Map<String, Object> mapping) {
+        try {
+            XContentBuilder builder = jsonBuilder();
+            builder.map(mapping);
+            return builder.string();
+        } catch (IOException e) {
+            throw new ElasticSearchOsemException("Failed to convert mapping to JSON string", e);
+        }
+    }
+
+    /**
+     * Get the root mapping of an indexable type, without properties
+     *
+     * @param indexable      annotation of the type
+     * @param parentTypeName type name of {@link Indexable#parentClass()}, null if no parent
+     * @param idMap          mapping of the id field
+     * @return map of the mapping
+     */
+    public static Map<String, Object> getIndexableMap(Indexable indexable, @Nullable String parentTypeName, Map<String, Object> idMap) {
+        Map<String, Object> objectMap = Maps.newHashMap();
+
+        if (!indexable.indexAnalyzer().isEmpty()) {
+            objectMap.put("index_analyzer", indexable.indexAnalyzer());
+        }
+
+        if (!indexable.searchAnalyzer().isEmpty()) {
+            objectMap.put("search_analyzer", indexable.searchAnalyzer());
+        }
+
+        if (indexable.dynamicDateFormats().length > 0) {
+            objectMap.put("dynamic_date_formats", Lists.newArrayList(indexable.dynamicDateFormats()));
+        }
+
+        if (!indexable.dateDetection().equals(DateDetectionEnum.NA)) {
+            objectMap.put("date_detection", Boolean.valueOf(indexable.dateDetection().toString()));
+        }
+
+        if (!indexable.numericDetection().equals(NumericDetectionEnum.NA)) {
+            objectMap.put("numeric_detection", Boolean.valueOf(indexable.numericDetection().toString()));
+        }
+
+        // handle _parent
+        if (parentTypeName != null) {
+            Map<String, Object> parentMap = Maps.newHashMap();
+            parentMap.put("type", parentTypeName);
+            objectMap.put("_parent", parentMap);
+        }
+
+        // handle _id
+        if (!idMap.isEmpty()) {
+            objectMap.put("_id", idMap);
+        }
+
+        // handle _type
+        Map<String, Object> typeMap = Maps.newHashMap();
+        if (indexable.typeFieldStore()) {
+            typeMap.put("store", "yes");
+        }
+
+        if (!indexable.typeFieldIndex().equals(IndexEnum.NA)) {
+            typeMap.put("index", indexable.typeFieldIndex().toString().toLowerCase());
+        }
+
+        if (!typeMap.isEmpty()) {
+            objectMap.put("_type", typeMap);
+        }
+
+        // handle _source
+        Map<String, Object> sourceMap = Maps.newHashMap();
+        if (!indexable.sourceFieldEnabled()) {
+            sourceMap.put("enabled", Boolean.FALSE);
+        }
+
+        if (indexable.sourceFieldCompress()) {
+            sourceMap.put("compress", Boolean.TRUE);
+        }
+
+        if (!indexable.sourceFieldCompressThreshold().isEmpty()) {
+            sourceMap.put("compress_threshold", indexable.sourceFieldCompressThreshold());
+        }
+
+        if (indexable.sourceFieldIncludes().length > 0) {
+            sourceMap.put("includes", Lists.newArrayList(indexable.sourceFieldIncludes()));
+        }
+
+        if (indexable.sourceFieldExcludes().length > 0) {
+            sourceMap.put("excludes", Lists.newArrayList(indexable.sourceFieldExcludes()));
+        }
+
+        if (!sourceMap.isEmpty()) {
+            objectMap.put("_source", sourceMap);
+        }
+
+        // handle _all
+        Map<String, Object> allMap = Maps.newHashMap();
+        if (!indexable.allFieldEnabled()) {
+            allMap.put("enabled", Boolean.FALSE);
+        }
+
+        if (indexable.allFieldStore()) {
+            allMap.put("store", "yes");
+        }
+
+        if (!indexable.allFieldTermVector().equals(TermVectorEnum.NA)) {
+            allMap.put("term_vector", indexable.allFieldTermVector().toString().toLowerCase());
+        }
+
+        if (!indexable.allFieldAnalyzer().isEmpty()) {
+            allMap.put("analyzer", indexable.allFieldAnalyzer());
+        }
+
+        if (!indexable.allFieldIndexAnalyzer().isEmpty()) {
+            allMap.put("index_analyzer", indexable.allFieldIndexAnalyzer());
+        }
+
+        if (!indexable.allFieldSearchAnalyzer().isEmpty()) {
+            allMap.put("search_analyzer", indexable.allFieldSearchAnalyzer());
+        }
+
+        if (!allMap.isEmpty()) {
+            objectMap.put("_all", allMap);
+        }
+
+        // handle _analyzer
+        Map<String, Object> analyzerMap = Maps.newHashMap();
+        if (!indexable.analyzerFieldPath().isEmpty()) {
+            analyzerMap.put("path", indexable.analyzerFieldPath());
+        }
+
+        if (!analyzerMap.isEmpty()) {
+            objectMap.put("_analyzer", analyzerMap);
+        }
+
+        // handle _boost
+        Map<String, Object> boostMap = Maps.newHashMap();
+        if (!indexable.boostFieldName().isEmpty()) {
+            boostMap.put("name", indexable.boostFieldName());
+        }
+
+        if (indexable.boostFieldNullValue() != Double.MIN_VALUE) {
+            boostMap.put("null_value", indexable.boostFieldNullValue());
+        }
+
+        if (!boostMap.isEmpty()) {
+            objectMap.put("_boost", boostMap);
+        }
+
+        // handle _routing
+        Map<String, Object> routingMap = Maps.newHashMap();
+        if (!indexable.routingFieldStore()) {
+            routingMap.put("store", "no");
+        }
+
+        if (!indexable.routingFieldIndex().equals(IndexEnum.NA)) {
+            routingMap.put("index", indexable.routingFieldIndex().toString().toLowerCase());
+        }
+
+        if (indexable.routingFieldRequired()) {
+            routingMap.put("required", Boolean.TRUE);
+        }
+
+        if (!indexable.routingFieldPath().isEmpty()) {
+            routingMap.put("path", indexable.routingFieldPath());
+        }
+
+        if (!routingMap.isEmpty()) {
+            objectMap.put("_routing", routingMap);
+        }
+
+        // handle _index
+        Map<String, Object> indexMap = Maps.newHashMap();
+        if (indexable.indexFieldEnabled()) {
+            indexMap.put("enabled", Boolean.TRUE);
+        }
+
+        if (!indexMap.isEmpty()) {
+            objectMap.put("_index", indexMap);
+        }
+
+        // handle _size
+        Map<String, Object> sizeMap = Maps.newHashMap();
+        if (indexable.sizeFieldEnabled()) {
+            sizeMap.put("enabled", Boolean.TRUE);
+        }
+
+        if (indexable.sizeFieldStore()) {
+            sizeMap.put("store", "yes");
+        }
+
+        if (!sizeMap.isEmpty()) {
+            objectMap.put("_size", sizeMap);
+        }
+
+        // handle _timestamp
+        Map<String, Object> timestampMap = Maps.newHashMap();
+        if (indexable.timestampFieldEnabled()) {
+            timestampMap.put("enabled", Boolean.TRUE);
+        }
+
+        if (indexable.timestampFieldStore()) {
+            timestampMap.put("store", "yes");
+        }
+
+        if (!indexable.timestampFieldIndex().equals(IndexEnum.NA)) {
+            timestampMap.put("index", indexable.timestampFieldIndex().toString().toLowerCase());
+        }
+
+        if (!indexable.timestampFieldPath().isEmpty()) {
+            timestampMap.put("path", indexable.timestampFieldPath());
+        }
+
+        if (!indexable.timestampFieldFormat().isEmpty()) {
+            timestampMap.put("format", indexable.timestampFieldFormat());
+        }
+
+        if (!timestampMap.isEmpty()) {
+            objectMap.put("_timestamp", timestampMap);
+        }
+
+        // handle _ttl
+        Map<String, Object> ttlMap = Maps.newHashMap();
+        if (indexable.ttlFieldEnabled()) {
+            ttlMap.put("enabled", Boolean.TRUE);
+        }
+
+        if (!indexable.ttlFieldStore()) {
+            ttlMap.put("store", "no");
+        }
+
+        if (!indexable.ttlFieldIndex().equals(IndexEnum.NA)) {
+            ttlMap.put("index", indexable.ttlFieldIndex().toString().toLowerCase());
+        }
+
+        if (!indexable.ttlFieldDefault().isEmpty()) {
+            ttlMap.put("default", indexable.ttlFieldDefault());
+        }
+
+        if (!ttlMap.isEmpty()) {
+            objectMap.put("_ttl", ttlMap);
+        }
+
+        return objectMap;
+    }
+
+    /**
+     * Get the mapping of the id field
+     *
+     * @param indexableId       id annotation of the field
+     * @param indexableProperty property annotation of the field, null if not a property
+     * @param fieldName         java name of the field
+     * @return map of the _id mapping
+     */
+    public static Map<String, Object> getIndexableIdMap(IndexableId indexableId, @Nullable IndexableProperty indexableProperty, String fieldName) {
+        Map<String, Object> idMap = Maps.newHashMap();
+
+        if (indexableId.index() != IndexEnum.NA) {
+            idMap.put("index", indexableId.index().toString().toLowerCase());
+        }
+
+        if (indexableId.store()) {
+            idMap.put("store", "yes");
+        }
+
+        if (indexableProperty != null) {
+            if (indexableProperty.name() != null && !indexableProperty.name().isEmpty()) {
+                fieldName = indexableProperty.name();
+            }
+            idMap.put("path", fieldName);  // only need to put this if the IndexableId field is also IndexableProperty
+        }
+
+        return idMap;
+    }
+
+    /**
+     * Get the mapping of a property
+     *
+     * @param indexableProperty annotation of the property
+     * @param javaTypeName      simple name of the property type, element type for collections
+     * @return map of the mapping, null if the property has no mapping
+     */
+    public static Map<String, Object> getIndexablePropertyMapping(IndexableProperty indexableProperty, String javaTypeName) {
+        if (!indexableProperty.rawMapping().isEmpty()) {    // has raw mapping, use it directly
+            return XContentHelper.convertToMap(indexableProperty.rawMapping().getBytes(), false).v2();
+        }
+
+        Map<String, Object> fieldMap = Maps.newHashMap();
+
+        String fieldType = getFieldType(indexableProperty.type(), javaTypeName);
+
+        if (fieldType.equals(TypeEnum.JSON.toString().toLowerCase())) {
+            logger.warn("Can't find mapping for json, please specify rawMapping if needed");
+            return null;
+        }
+
+        fieldMap.put("type", fieldType);
+
+        if (indexableProperty.index() != IndexEnum.NA) {
+            fieldMap.put("index", indexableProperty.index().toString().toLowerCase());
+        }
+
+        if (indexableProperty.docValues()) {
+            fieldMap.put("doc_values", Boolean.TRUE);
+        }
+
+        if (indexableProperty.docValuesFormat() != DocValuesFormatEnum.NA) {
+            fieldMap.put("doc_values_format", indexableProperty.docValuesFormat().toString().toLowerCase());
+        }
+
+        if (!indexableProperty.indexName().isEmpty()) {
+            fieldMap.put("index_name", indexableProperty.indexName());
+        }
+
+        if (indexableProperty.termVector() != TermVectorEnum.NA) {
+            fieldMap.put("term_vector", indexableProperty.termVector().toString().toLowerCase());
+        }
+
+        if (indexableProperty.store()) {
+            fieldMap.put("store", "yes");
+        }
+
+        if (indexableProperty.boost() != Double.MIN_VALUE) {
+            fieldMap.put("boost", indexableProperty.boost());
+        }
+
+        if (!indexableProperty.nullValue().isEmpty()) {
+            fieldMap.put("null_value", indexableProperty.nullValue());
+        }
+
+        if (indexableProperty.normsEnabled() != NormsEnabledEnum.NA) {
+            fieldMap.put("norms.enabled", indexableProperty.normsEnabled().toString().toLowerCase());
+        }
+
+        if (indexableProperty.normsLoading() != NormsLoadingEnum.NA) {
+            fieldMap.put("norms.loading", indexableProperty.normsLoading().toString().toLowerCase());
+        }
+
+        if (indexableProperty.indexOptions() != IndexOptionsEnum.NA) {
+            fieldMap.put("index_options", indexableProperty.indexOptions().toString().toLowerCase());
+        }
+
+        if (!indexableProperty.analyzer().isEmpty()) {
+            fieldMap.put("analyzer", indexableProperty.analyzer());
+        }
+
+        if (!indexableProperty.indexAnalyzer().isEmpty()) {
+            fieldMap.put("index_analyzer", indexableProperty.indexAnalyzer());
+        }
+
+        if (!indexableProperty.searchAnalyzer().isEmpty()) {
+            fieldMap.put("search_analyzer", indexableProperty.searchAnalyzer());
+        }
+
+        if (indexableProperty.includeInAll() != IncludeInAllEnum.NA) {
+            fieldMap.put("include_in_all", indexableProperty.includeInAll().toString().toLowerCase());
+        }
+
+        if (indexableProperty.ignoreAbove() != Integer.MIN_VALUE) {
+            fieldMap.put("ignore_above", indexableProperty.ignoreAbove());
+        }
+
+        if (indexableProperty.positionOffsetGap() != Integer.MIN_VALUE) {
+            fieldMap.put("position_offset_gap", indexableProperty.positionOffsetGap());
+        }
+
+        if (indexableProperty.precisionStep() != Integer.MIN_VALUE) {
+            fieldMap.put("precision_step", indexableProperty.precisionStep());
+        }
+
+        if (indexableProperty.ignoreMalformed()) {
+            fieldMap.put("ignore_malformed", Boolean.TRUE);
+        }
+
+        if (!indexableProperty.coerce()) {
+            fieldMap.put("coerce", Boolean.FALSE);
+        }
+
+        if (indexableProperty.postingsFormat() != PostingsFormatEnum.NA) {
+            fieldMap.put("postings_format", indexableProperty.postingsFormat().toString().toLowerCase());
+        }
+
+        if (indexableProperty.similarity() != SimilarityEnum.NA) {
+            switch (indexableProperty.similarity()) {
+                case DEFAULT:
+                    fieldMap.put("similarity", indexableProperty.postingsFormat().toString().toLowerCase());
+                    break;
+                case BM25: // BM25 should be uppercase
+                    fieldMap.put("similarity", indexableProperty.postingsFormat().toString().toUpperCase());
+                    break;
+            }
+        }
+
+
+        if (!indexableProperty.format().isEmpty()) {
+            fieldMap.put("format", indexableProperty.format());
+        }
+
+        if (indexableProperty.copyTo().length > 0) {
+            fieldMap.put("copy_to", Lists.newArrayList(indexableProperty.copyTo()));
+        }
+
+        if (indexableProperty.geoPointLatLon()) {
+            fieldMap.put("lat_lon", Boolean.TRUE);
+        }
+
+        if (indexableProperty.geoPointGeohash()) {
+            fieldMap.put("geohash", Boolean.TRUE);
+        }
+
+        if (indexableProperty.geoPointGeohashPrecision() != Integer.MIN_VALUE) {
+            fieldMap.put("geohash_precision", indexableProperty.geoPointGeohashPrecision());
+        }
+
+        if (indexableProperty.geoPointGeohashPrefix()) {
+            fieldMap.put("geohash_prefix", Boolean.TRUE);
+        }
+
+        if (!indexableProperty.geoPointValidate()) {
+            fieldMap.put("validate", Boolean.FALSE);
+        }
+
+        if (!indexableProperty.geoPointValidateLat()) {
+            fieldMap.put("validate_lat", Boolean.FALSE);
+        }
+
+        if (!indexableProperty.geoPointValidateLon()) {
+            fieldMap.put("validate_lon", Boolean.FALSE);
+        }
+
+        if (!indexableProperty.geoPointNormalize()) {
+            fieldMap.put("normalize", Boolean.FALSE);
+        }
+
+        if (!indexableProperty.geoPointNormalizeLat()) {
+            fieldMap.put("normalize_lat", Boolean.FALSE);
+        }
+
+        if (!indexableProperty.geoPointNormalizeLon()) {
+            fieldMap.put("normalize_lon", Boolean.FALSE);
+        }
+
+        if (indexableProperty.geoShapeTree() != GeoShapeTreeEnum.NA) {
+            fieldMap.put("tree", indexableProperty.geoShapeTree().toString().toLowerCase());
+        }
+
+        if (!indexableProperty.geoShapePrecision().isEmpty()) {
+            fieldMap.put("precision", indexableProperty.geoShapePrecision());
+        }
+
+        if (indexableProperty.geoShapeTreeLevels() != Integer.MIN_VALUE) {
+            fieldMap.put("tree_levels", indexableProperty.geoShapeTreeLevels());
+        }
+
+        if (indexableProperty.geoShapeDistanceErrorPct() != Float.MIN_VALUE) {
+            fieldMap.put("distance_error_pct", indexableProperty.geoShapeDistanceErrorPct());
+        }
+
+        Map<String, Object> fieldDataMap = getFieldDataMap(indexableProperty);
+        if (fieldDataMap != null && !fieldDataMap.isEmpty()) {
+            fieldMap.put("fielddata", fieldDataMap);
+        }
+
+        return fieldMap;
+    }
+
+    private static Map<String, Object> getFieldDataMap(IndexableProperty indexableProperty) {
+        Map<String, Object> fieldDataMap = Maps.newHashMap();
+        if (!indexableProperty.fieldDataFormat().equals(FieldDataFormat.NA)) {
+            fieldDataMap.put("format", indexableProperty.fieldDataFormat().toString().toLowerCase());
+        }
+
+        if (!indexableProperty.fieldDataLoading().equals(FieldDataLoading.NA)) {
+            fieldDataMap.put("loading", indexableProperty.fieldDataLoading().toString().toLowerCase());
+        }
+
+        if (!indexableProperty.fieldDataFilterFrequencyMin().isEmpty()) {
+            fieldDataMap.put("filter.frequency.min", indexableProperty.fieldDataFilterFrequencyMin());
+        }
+
+        if (!indexableProperty.fieldDataFilterFrequencyMax().isEmpty()) {
+            fieldDataMap.put("filter.frequency.max", indexableProperty.fieldDataFilterFrequencyMax());
+        }
+
+        if (!indexableProperty.fieldDataFilterFrequencyMinSegmentSize().isEmpty()) {
+            fieldDataMap.put("filter.frequency.min_segment_size", indexableProperty.fieldDataFilterFrequencyMinSegmentSize());
+        }
+
+        if (!indexableProperty.fieldDataFilterRegexPattern().isEmpty()) {
+            fieldDataMap.put("filter.regex.pattern", indexableProperty.fieldDataFilterRegexPattern());
+        }
+        return fieldDataMap;
+    }
+
+    /**
+     * Get the mapping of a component
+     *
+     * @param indexableComponent annotation of the component
+     * @param properties         properties mapping of the component type
+     * @return map of the mapping
+     */
+    public static Map<String, Object> getIndexableComponentMapping(IndexableComponent indexableComponent, Map<String, Object> properties) {
+        Map<String, Object> fieldMap = Maps.newHashMap();
+        fieldMap.put("properties", properties);
+        if (indexableComponent.nested()) {
+            fieldMap.put("type", "nested");
+        } else {
+            fieldMap.put("type", "object");
+        }
+
+        if (indexableComponent.dynamic() != DynamicEnum.NA) {
+            fieldMap.put("dynamic", indexableComponent.dynamic().toString().toLowerCase());
+        }
+
+        if (!indexableComponent.enabled()) {
+            fieldMap.put("enabled", Boolean.FALSE);
+        }
+
+        if (indexableComponent.path() != ObjectFieldPathEnum.NA) {
+            fieldMap.put("path", indexableComponent.path().toString().toLowerCase());
+        }
+
+        if (indexableComponent.includeInAll() != IncludeInAllEnum.NA) {
+            fieldMap.put("include_in_all", indexableComponent.includeInAll().toString().toLowerCase());
+        }
+
+        return fieldMap;
+    }
+
+
+    /**
+     * Get the multi-field mapping of a property
+     *
+     * @param indexableProperties annotation of the property
+     * @param fieldName           java name of the field, null for methods
+     * @param javaTypeName        simple name of the property type, element type for collections
+     * @return property name and map of the mapping
+     */
+    public static Tuple<String, Map<String, Object>> getIndexablePropertiesMapping(IndexableProperties indexableProperties,
+                                                                                   @Nullable String fieldName, String javaTypeName) {
+        if (indexableProperties.properties().length < 1) {
+            throw new ElasticSearchOsemException("IndexableProperties must have at lease one IndexableProperty");
+        }
+
+        if (!indexableProperties.name().isEmpty()) {
+            fieldName = indexableProperties.name();
+        }
+
+        if (fieldName == null) {
+            throw new ElasticSearchOsemException("Unable to find field name for IndexableProperties");
+        }
+
+        Map<String, Object> multiFieldMap = Maps.newHashMap();
+        multiFieldMap.put("type", getFieldType(indexableProperties.type(), javaTypeName));
+
+        if (indexableProperties.path() != MultiFieldPathEnum.NA) {
+            multiFieldMap.put("path", indexableProperties.path().toString().toLowerCase());
+        }
+
+        boolean emptyNameProcessed = false;
+        Map<String, Object> fieldsMap = Maps.newHashMap();
+        for (IndexableProperty property : indexableProperties.properties()) {
+            String propertyName = property.name();
+            if (propertyName.isEmpty()) {
+                if (!emptyNameProcessed) {
+                    emptyNameProcessed = true;
+                    propertyName = fieldName;
+                } else {
+                    throw new ElasticSearchOsemException("Field name cannot be empty in multi-field");
+                }
+            }
+            Map<String, Object> fieldMap = getIndexablePropertyMapping(property, javaTypeName);
+            if (propertyName.equals(fieldName)) {
+                multiFieldMap.putAll(fieldMap);
+            } else {
+                fieldsMap.put(propertyName, fieldMap);
+            }
+        }
+        multiFieldMap.put("fields", fieldsMap);
+        return new Tuple<String, Map<String, Object>>(fieldName, multiFieldMap);
+    }
+
+    /**
+     * Get the ElasticSearch type of a property
+     *
+     * @param fieldTypeEnum type in annotation
+     * @param javaTypeName  simple name of the property type, used when type is {@link TypeEnum#AUTO}
+     * @return type name
+     */
+    public static String getFieldType(TypeEnum fieldTypeEnum, String javaTypeName) {
+        String fieldType;
+
+        if (fieldTypeEnum.equals(TypeEnum.AUTO)) {
+            fieldType = javaTypeName.toLowerCase();
+        } else {
+            fieldType = fieldTypeEnum.toString().toLowerCase();
+        }
+        return fieldType;
+    }
+
+}
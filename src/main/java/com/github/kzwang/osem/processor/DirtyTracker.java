@@ -0,0 +1,80 @@
+package com.github.kzwang.osem.processor;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.collect.Maps;
+import org.elasticsearch.common.xcontent.XContentHelper;
+
+import java.util.Map;
+
+/**
+ * Snapshots of the source of objects with {@link com.github.kzwang.osem.annotations.Indexable#dirtyTracking()},
+ * used to find the properties changed since the object was read or written
+ * <p/>
+ * Objects are weakly referenced and compared by identity, a snapshot goes away with its object.
+ */
+public class DirtyTracker {
+
+    private final Cache<Object, byte[]> snapshots = CacheBuilder.newBuilder().weakKeys().build();
+
+    /**
+     * Keep the source as snapshot of the object
+     *
+     * @param object object read from or written to ElasticSearch
+     * @param source json source of the object
+     */
+    public void snapshot(Object object, BytesReference source) {
+        snapshots.put(object, source.toBytes());
+    }
+
+    /**
+     * @param object object to check
+     * @return true if the object has a snapshot
+     */
+    public boolean hasSnapshot(Object object) {
+        return snapshots.getIfPresent(object) != null;
+    }
+
+    /**
+     * Drop the snapshot of the object
+     *
+     * @param object object to forget
+     */
+    public void remove(Object object) {
+        snapshots.invalidate(object);
+    }
+
+    /**
+     * Get the top level properties changed since the snapshot, removed properties are set to null
+     *
+     * @param object object to check
+     * @param source current json source of the object
+     * @return changed properties with the current values, null if the object has no snapshot
+     */
+    @Nullable
+    public Map<String, Object> getChanges(Object object, BytesReference source) {
+        byte[] snapshot = snapshots.getIfPresent(object);
+        if (snapshot == null) {
+            return null;
+        }
+        Map<String, Object> before = XContentHelper.convertToMap(snapshot, false).v2();
+        Map<String, Object> after = XContentHelper.convertToMap(source, false).v2();
+        Map<String, Object> changes = Maps.newHashMap();
+        for (Map.Entry<String, Object> entry : after.entrySet()) {
+            Object value = entry.getValue();
+            Object oldValue = before.get(entry.getKey());
+            if (value == null ? oldValue != null || !before.containsKey(entry.getKey()) : !value.equals(oldValue)) {
+                changes.put(entry.getKey(), value);
+            }
+        }
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key)) {
+                changes.put(key, null);
+            }
+        }
+        return changes;
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.github.kzwang.osem.processor;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Preconditions;
+
+/**
+ * Id and routing of a document, enough to get it from the right shard
+ */
+public final class DocumentKey {
+
+    private final String id;
+
+    private final String routing;
+
+    public DocumentKey(String id) {
+        this(id, null);
+    }
+
+    /**
+     * @param id      id of the document
+     * @param routing routing of the document, the parent id for child documents without routing
+     */
+    public DocumentKey(String id, @Nullable String routing) {
+        this.id = Preconditions.checkNotNull(id, "id must not be null");
+        this.routing = routing;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @Nullable
+    public String getRouting() {
+        return routing;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        DocumentKey that = (DocumentKey) o;
+
+        if (!id.equals(that.id)) return false;
+        if (routing != null ? !routing.equals(that.routing) : that.routing != null) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = id.hashCode();
+        result = 31 * result + (routing != null ? routing.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return routing == null ? id : id + "[" + routing + "]";
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.kzwang.osem.processor;
+
+/**
+ * Reflection free id, routing and parent accessor of an indexable class, generated at compile time
+ * by the OSEM annotation processor
+ */
+public interface DocumentKeyAccessor {
+
+    /**
+     * Get the id of the object
+     *
+     * @param object object to get id
+     * @return id value
+     */
+    public Object getId(Object object);
+
+    /**
+     * Get the routing id of the object
+     *
+     * @param object object to get routing id
+     * @return routing id, null if class has no routing path
+     */
+    public String getRouting(Object object);
+
+    /**
+     * Get the parent id of the object
+     *
+     * @param object object to get parent id
+     * @return parent id, null if class has no parent path
+     */
+    public String getParent(Object object);
+
+}
@@ -0,0 +1,110 @@
+package com.github.kzwang.osem.processor;
+
+import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import com.github.kzwang.osem.utils.FieldPath;
+import com.github.kzwang.osem.utils.OsemReflectionUtils;
+
+import java.lang.reflect.Field;
+
+/**
+ * Id, routing and parent accessors of a class, taken from its {@link OsemClassModel} so extracting them from a document
+ * doesn't need any reflection scan. The {@link DocumentKeyAccessor} generated at compile time is used if present.
+ */
+public class DocumentKeyPlan {
+
+    private final Class clazz;
+
+    private final Field idField;
+
+    private final boolean indexable;
+
+    private final FieldPath routingPath;
+
+    private final FieldPath parentPath;
+
+    private final DocumentKeyAccessor keyAccessor;
+
+    private DocumentKeyPlan(Class clazz, Field idField, boolean indexable, FieldPath routingPath, FieldPath parentPath,
+                            DocumentKeyAccessor keyAccessor) {
+        this.clazz = clazz;
+        this.idField = idField;
+        this.indexable = indexable;
+        this.routingPath = routingPath;
+        this.parentPath = parentPath;
+        this.keyAccessor = keyAccessor;
+    }
+
+    /**
+     * Resolve the id field, routing path and parent path of the class
+     *
+     * @param clazz class to compile
+     * @return plan for the class
+     */
+    public static DocumentKeyPlan compile(Class clazz) {
+        DocumentKeyAccessor keyAccessor = GeneratedArtifacts.getKeyAccessor(clazz);
+        if (keyAccessor != null) {
+            return new DocumentKeyPlan(clazz, null, true, null, null, keyAccessor);
+        }
+
+        OsemClassModel classModel = OsemClassModel.of(clazz);
+        return new DocumentKeyPlan(clazz, classModel.getIdField(), classModel.isIndexable(), classModel.getRoutingPath(),
+                classModel.getParentPath(), null);
+    }
+
+    /**
+     * Get the id of the object
+     *
+     * @param object object to get id
+     * @return id value
+     */
+    public Object getId(Object object) {
+        if (keyAccessor != null) {
+            return keyAccessor.getId(object);
+        }
+        if (idField == null) {
+            throw new ElasticSearchOsemException("Can't find id field for class: " + clazz.getSimpleName());
+        }
+        return OsemReflectionUtils.getFieldValue(object, idField);
+    }
+
+    /**
+     * Get the routing id of the object
+     *
+     * @param object object to get routing id
+     * @return routing id, null if class has no routing path
+     */
+    public String getRouting(Object object) {
+        if (keyAccessor != null) {
+            return keyAccessor.getRouting(object);
+        }
+        checkIndexable();
+        return getValueAsString(routingPath, object);
+    }
+
+    /**
+     * Get the parent id of the object
+     *
+     * @param object object to get parent id
+     * @return parent id, null if class has no parent path
+     */
+    public String getParent(Object object) {
+        if (keyAccessor != null) {
+            return keyAccessor.getParent(object);
+        }
+        checkIndexable();
+        return getValueAsString(parentPath, object);
+    }
+
+    private void checkIndexable() {
+        if (!indexable) {
+            throw new ElasticSearchOsemException("Class " + clazz.getSimpleName() + " is no Indexable");
+        }
+    }
+
+    private static String getValueAsString(FieldPath path, Object object) {
+        if (path == null) return null;
+        Object value = path.getValue(object);
+        return value == null ? null : value.toString();
+    }
+
+}
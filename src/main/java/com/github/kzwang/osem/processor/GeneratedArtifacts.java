@@ -0,0 +1,96 @@
+package com.github.kzwang.osem.processor;
+
+import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import org.elasticsearch.common.base.Charsets;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+
+/**
+ * Locate the mapping and {@link DocumentKeyAccessor} generated by the OSEM annotation processor for a class
+ */
+public final class GeneratedArtifacts {
+
+    private static final ESLogger logger = Loggers.getLogger(GeneratedArtifacts.class);
+
+    public static final String MAPPING_RESOURCE_PREFIX = "META-INF/osem/";
+
+    public static final String KEY_ACCESSOR_SUFFIX = "_OsemKeyAccessor";
+
+    private GeneratedArtifacts() {
+    }
+
+    /**
+     * Get the resource name of the generated mapping
+     *
+     * @param className binary name of the class
+     * @return resource name
+     */
+    public static String getMappingResourceName(String className) {
+        return MAPPING_RESOURCE_PREFIX + className + ".json";
+    }
+
+    /**
+     * Get the name of the generated key accessor, nested classes are flattened with '_'
+     *
+     * @param className binary name of the class
+     * @return binary name of the accessor class
+     */
+    public static String getKeyAccessorClassName(String className) {
+        int packageEnd = className.lastIndexOf('.');
+        String packageName = packageEnd < 0 ? "" : className.substring(0, packageEnd + 1);
+        return packageName + className.substring(packageEnd + 1).replace('$', '_') + KEY_ACCESSOR_SUFFIX;
+    }
+
+    /**
+     * Get the generated mapping of the class
+     *
+     * @param clazz class to get mapping
+     * @return mapping json, null if not generated
+     */
+    public static String getMapping(Class clazz) {
+        InputStream in = getClassLoader(clazz).getResourceAsStream(getMappingResourceName(clazz.getName()));
+        if (in == null) {
+            return null;
+        }
+        try {
+            return Streams.copyToString(new InputStreamReader(in, Charsets.UTF_8));
+        } catch (IOException e) {
+            throw new ElasticSearchOsemException("Failed to read generated mapping for class: " + clazz.getName(), e);
+        }
+    }
+
+    /**
+     * Get the generated key accessor of the class
+     *
+     * @param clazz class to get accessor
+     * @return accessor, null if not generated
+     */
+    public static DocumentKeyAccessor getKeyAccessor(Class clazz) {
+        Class<?> accessorClass;
+        try {
+            accessorClass = Class.forName(getKeyAccessorClassName(clazz.getName()), true, getClassLoader(clazz));
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        if (!DocumentKeyAccessor.class.isAssignableFrom(accessorClass)) {
+            logger.warn("Ignore generated key accessor {}, it doesn't implement DocumentKeyAccessor", accessorClass.getName());
+            return null;
+        }
+        try {
+            return (DocumentKeyAccessor) accessorClass.newInstance();
+        } catch (Exception e) {
+            throw new ElasticSearchOsemException("Failed to create generated key accessor for class: " + clazz.getName(), e);
+        }
+    }
+
+    private static ClassLoader getClassLoader(Class clazz) {
+        ClassLoader classLoader = clazz.getClassLoader();
+        return classLoader != null ? classLoader : ClassLoader.getSystemClassLoader();
+    }
+}
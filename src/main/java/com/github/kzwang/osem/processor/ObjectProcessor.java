@@ -2,44 +2,115 @@ package com.github.kzwang.osem.processor;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
-import com.github.kzwang.osem.annotations.Indexable;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
+import com.fasterxml.jackson.databind.introspect.NopAnnotationIntrospector;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import com.github.kzwang.osem.cache.CacheType;
 import com.github.kzwang.osem.cache.OsemCache;
 import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import com.github.kzwang.osem.jackson.AfterburnerSupport;
 import com.github.kzwang.osem.jackson.JacksonElasticSearchOsemModule;
+import com.github.kzwang.osem.jackson.PartialDocumentFilter;
 import com.github.kzwang.osem.utils.OsemReflectionUtils;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.VersionType;
 
 import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
 
 
 /**
  * Serialize/Deserialize object using Jackson
+ * <p/>
+ * Thread safe, the immutable {@link ObjectReader}/{@link ObjectWriter} of each class are created once and reused.
+ * Use the shared instance from {@link OsemContext} instead of creating new processors.
  */
 public class ObjectProcessor {
 
     private static final ESLogger logger = Loggers.getLogger(ObjectProcessor.class);
 
+    /**
+     * System property to enable Afterburner for processors created with {@link #ObjectProcessor()}
+     */
+    public static final String AFTERBURNER_PROPERTY = "osem.afterburner";
+
+    /**
+     * Buffers larger than this are not kept for reuse, so a few huge documents don't pin memory on every thread
+     */
+    private static final int MAX_REUSED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<BytesStreamOutput> serializeBuffer = new ThreadLocal<BytesStreamOutput>() {
+        @Override
+        protected BytesStreamOutput initialValue() {
+            return new BytesStreamOutput();
+        }
+    };
+
     private ObjectMapper serializeMapper;
 
     private ObjectMapper deSerializeMapper;
 
+    private ObjectMapper partialMapper;
+
+    private final DirtyTracker dirtyTracker = new DirtyTracker();
+
     private OsemCache osemCache;
 
+    private final ConcurrentMap<Class, ObjectReader> readers = ConcurrentCollections.newConcurrentMap();
+
+    private final ConcurrentMap<Class, ObjectWriter> writers = ConcurrentCollections.newConcurrentMap();
+
+    private final ConcurrentMap<Class, ObjectWriter> partialWriters = ConcurrentCollections.newConcurrentMap();
+
 
     public ObjectProcessor() {
+        this(Boolean.getBoolean(AFTERBURNER_PROPERTY));
+    }
+
+    /**
+     * Create processor
+     *
+     * @param afterburner use Jackson Afterburner to generate bytecode accessors for properties, falls back to
+     *                    reflection if Afterburner is not on the class path. Properties are read from fields,
+     *                    only non-private ones can be optimized, so models with private fields gain nothing.
+     */
+    public ObjectProcessor(boolean afterburner) {
         osemCache = OsemCache.getInstance();
-        initSerializeMapper();
-        initDeSerializeMapper();
+        serializeMapper = createSerializeMapper();
+        deSerializeMapper = createDeSerializeMapper();
+        partialMapper = createPartialMapper();
+        if (afterburner) {
+            if (AfterburnerSupport.isAvailable()) {
+                serializeMapper.registerModule(AfterburnerSupport.newModule());
+                deSerializeMapper.registerModule(AfterburnerSupport.newModule());
+                partialMapper.registerModule(AfterburnerSupport.newModule());
+            } else {
+                logger.warn("Jackson Afterburner is not on the class path, use reflection to access properties");
+            }
+        }
     }
 
 
-    private void initSerializeMapper() {
-        serializeMapper = new ObjectMapper();
+    private ObjectMapper createSerializeMapper() {
+        ObjectMapper serializeMapper = new ObjectMapper();
         serializeMapper.setVisibilityChecker(serializeMapper.getSerializationConfig().getDefaultVisibilityChecker()
                 .withCreatorVisibility(JsonAutoDetect.Visibility.NONE)
                 .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
@@ -49,10 +120,11 @@ public class ObjectProcessor {
         serializeMapper.registerModule(new JacksonElasticSearchOsemModule());
         serializeMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
         serializeMapper.setSerializationInclusion(JsonInclude.Include.NON_EMPTY);
+        return serializeMapper;
     }
 
-    private void initDeSerializeMapper() {
-        deSerializeMapper = new ObjectMapper();
+    private ObjectMapper createDeSerializeMapper() {
+        ObjectMapper deSerializeMapper = new ObjectMapper();
         deSerializeMapper.setVisibilityChecker(deSerializeMapper.getDeserializationConfig().getDefaultVisibilityChecker()
                 .withCreatorVisibility(JsonAutoDetect.Visibility.NONE)
                 .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
@@ -61,6 +133,87 @@ public class ObjectProcessor {
                 .withSetterVisibility(JsonAutoDetect.Visibility.NONE));
         deSerializeMapper.registerModule(new JacksonElasticSearchOsemModule());
         deSerializeMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return deSerializeMapper;
+    }
+
+    /**
+     * Serialize mapper that filters the properties of the root object with {@link PartialDocumentFilter},
+     * null values are written so properties can be cleared by a partial update.
+     * Not a {@link ObjectMapper#copy()}, the copy would share the serializer cache of the serialize mapper.
+     */
+    private ObjectMapper createPartialMapper() {
+        ObjectMapper partialMapper = createSerializeMapper();
+        partialMapper.setAnnotationIntrospector(AnnotationIntrospector.pair(new NopAnnotationIntrospector() {
+            @Override
+            public Object findFilterId(Annotated a) {
+                return a instanceof AnnotatedClass ? PartialDocumentFilter.FILTER_ID : null;
+            }
+
+            @Override
+            public Object findFilterId(AnnotatedClass ac) {
+                return PartialDocumentFilter.FILTER_ID;
+            }
+        }, serializeMapper.getSerializationConfig().getAnnotationIntrospector()));
+        partialMapper.setSerializationInclusion(JsonInclude.Include.ALWAYS);
+        return partialMapper;
+    }
+
+    /**
+     * Build and cache the Jackson serializer, deserializer and document key plan of the class,
+     * so the first object of the class doesn't pay for them
+     *
+     * @param clazz class to warm up
+     */
+    public void warmUp(Class clazz) {
+        if (!serializeMapper.canSerialize(clazz)) {
+            throw new ElasticSearchOsemException("Unable to build serializer for class: " + clazz.getSimpleName());
+        }
+        if (!deSerializeMapper.canDeserialize(deSerializeMapper.constructType(clazz))) {
+            throw new ElasticSearchOsemException("Unable to build deserializer for class: " + clazz.getSimpleName());
+        }
+        getWriter(clazz);
+        getReader(clazz);
+        getDocumentKeyPlan(clazz);
+    }
+
+    /**
+     * Get the writer bound to class
+     *
+     * @param clazz class to serialize
+     * @return cached writer
+     */
+    public ObjectWriter getWriter(Class clazz) {
+        ObjectWriter writer = writers.get(clazz);
+        if (writer == null) {
+            writer = serializeMapper.writerWithType(clazz);
+            ObjectWriter existing = writers.putIfAbsent(clazz, writer);
+            if (existing != null) {
+                writer = existing;
+            }
+        }
+        return writer;
+    }
+
+    private ObjectWriter getWriter(Object object) {
+        return object != null ? getWriter(object.getClass()) : serializeMapper.writer();
+    }
+
+    /**
+     * Get the reader bound to class
+     *
+     * @param clazz class to deserialize to
+     * @return cached reader
+     */
+    public ObjectReader getReader(Class clazz) {
+        ObjectReader reader = readers.get(clazz);
+        if (reader == null) {
+            reader = deSerializeMapper.reader(clazz);
+            ObjectReader existing = readers.putIfAbsent(clazz, reader);
+            if (existing != null) {
+                reader = existing;
+            }
+        }
+        return reader;
     }
 
     /**
@@ -71,13 +224,60 @@ public class ObjectProcessor {
      */
     public String toJsonString(Object object) {
         try {
-            return serializeMapper.writeValueAsString(object);
+            return getWriter(object).writeValueAsString(object);
         } catch (Exception ex) {
             throw new ElasticSearchOsemException("Failed to convert object to json string", ex);
         }
 
     }
 
+    /**
+     * Serialize object to UTF-8 json bytes, without creating an intermediate string
+     *
+     * @param object object to serialize
+     * @return json bytes of the object
+     */
+    public BytesReference toJsonBytes(Object object) {
+        return toJsonBytes(getWriter(object), object);
+    }
+
+    /**
+     * Serialize only some properties of the object to UTF-8 json bytes, used as partial document for updates.
+     * Nested objects of the properties are serialized as a whole.
+     *
+     * @param object        object to serialize
+     * @param propertyNames json names of the top level properties to serialize
+     * @return json bytes of the properties
+     */
+    public BytesReference toPartialJsonBytes(Object object, Set<String> propertyNames) {
+        ObjectWriter writer = partialWriters.get(object.getClass());
+        if (writer == null) {
+            writer = partialMapper.writerWithType(object.getClass());
+            ObjectWriter existing = partialWriters.putIfAbsent(object.getClass(), writer);
+            if (existing != null) {
+                writer = existing;
+            }
+        }
+        writer = writer.with(new SimpleFilterProvider().addFilter(PartialDocumentFilter.FILTER_ID, new PartialDocumentFilter(propertyNames)));
+        return toJsonBytes(writer, object);
+    }
+
+    private BytesReference toJsonBytes(ObjectWriter writer, Object object) {
+        BytesStreamOutput out = serializeBuffer.get();
+        try {
+            writer.writeValue(out, object);
+            return out.bytes().copyBytesArray();  // exact size copy, the buffer is reused by the next call
+        } catch (Exception ex) {
+            throw new ElasticSearchOsemException("Failed to convert object to json bytes", ex);
+        } finally {
+            if (out.bufferSize() > MAX_REUSED_BUFFER_SIZE) {
+                serializeBuffer.remove();
+            } else {
+                out.reset();
+            }
+        }
+    }
+
 
     /**
      * Deserialize object to json string
@@ -88,12 +288,63 @@ public class ObjectProcessor {
      */
     public <T> T fromJsonString(String string, Class<T> clazz) {
         try {
-            return deSerializeMapper.readValue(string, clazz);
+            T object = getReader(clazz).readValue(string);
+            if (object != null && OsemClassModel.of(clazz).isDirtyTracking()) {
+                dirtyTracker.snapshot(object, new BytesArray(string));
+            }
+            return object;
         } catch (Exception ex) {
             throw new ElasticSearchOsemException("Failed to convert object from json string", ex);
         }
     }
 
+    /**
+     * Deserialize object from UTF-8 json bytes, without creating an intermediate string
+     *
+     * @param bytes json bytes to deserialize
+     * @param clazz Class to deserialize to
+     * @return object
+     */
+    public <T> T fromJsonBytes(BytesReference bytes, Class<T> clazz) {
+        T object = readJsonBytes(bytes, clazz);
+        if (object != null && OsemClassModel.of(clazz).isDirtyTracking()) {
+            dirtyTracker.snapshot(object, bytes);
+        }
+        return object;
+    }
+
+    /**
+     * Deserialize object from json bytes of a filtered source, no snapshot is taken for dirty tracking as missing
+     * properties are not removed ones
+     *
+     * @param bytes json bytes with some properties of the object
+     * @param clazz Class to deserialize to
+     * @return object
+     */
+    public <T> T fromPartialJsonBytes(BytesReference bytes, Class<T> clazz) {
+        return readJsonBytes(bytes, clazz);
+    }
+
+    private <T> T readJsonBytes(BytesReference bytes, Class<T> clazz) {
+        try {
+            if (bytes.hasArray()) {
+                return getReader(clazz).readValue(bytes.array(), bytes.arrayOffset(), bytes.length());
+            }
+            return getReader(clazz).readValue(bytes.streamInput());
+        } catch (Exception ex) {
+            throw new ElasticSearchOsemException("Failed to convert object from json bytes", ex);
+        }
+    }
+
+
+    /**
+     * Get the snapshots of objects with dirty tracking
+     *
+     * @return dirty tracker
+     */
+    public DirtyTracker getDirtyTracker() {
+        return dirtyTracker;
+    }
 
     /**
      * Get the id of the object
@@ -102,15 +353,7 @@ public class ObjectProcessor {
      * @return id value
      */
     public Object getIdValue(Object object) {
-        Field idField = (Field) osemCache.getCache(CacheType.ID_FIELD, object.getClass());  // try cache first
-        if (idField == null) {
-            idField = OsemReflectionUtils.getIdField(object.getClass());
-            if (idField == null) {
-                throw new ElasticSearchOsemException("Can't find id field for class: " + object.getClass().getSimpleName());
-            }
-            osemCache.putCache(CacheType.ID_FIELD, object.getClass(), idField);
-        }
-        return OsemReflectionUtils.getFieldValue(object, idField);
+        return getDocumentKeyPlan(object.getClass()).getId(object);
     }
 
     /**
@@ -120,22 +363,7 @@ public class ObjectProcessor {
      * @return routing id
      */
     public String getRoutingId(Object object) {
-        Class clazz = object.getClass();
-        if (osemCache.isExist(CacheType.ROUTING_PATH, clazz)) {
-            String path = (String) osemCache.getCache(CacheType.ROUTING_PATH, clazz);
-            if (path == null || path.isEmpty()) return null;
-            return getValueByPath(object, path);
-        }
-        Indexable indexable = (Indexable) clazz.getAnnotation(Indexable.class);
-        if (indexable == null) {
-            throw new ElasticSearchOsemException("Class " + object.getClass().getSimpleName() + " is no Indexable");
-        }
-        String path = indexable.routingFieldPath();
-        osemCache.putCache(CacheType.ROUTING_PATH, clazz, path);
-        if (!path.isEmpty()) {
-            return getValueByPath(object, path);
-        }
-        return null;
+        return getDocumentKeyPlan(object.getClass()).getRouting(object);
     }
 
     /**
@@ -145,32 +373,95 @@ public class ObjectProcessor {
      * @return parent id
      */
     public String getParentId(Object object) {
-        Class clazz = object.getClass();
-        if (osemCache.isExist(CacheType.PARENT_PATH, clazz)) {
-            String path = (String) osemCache.getCache(CacheType.PARENT_PATH, clazz);
-            if (path == null || path.isEmpty()) return null;
-            return getValueByPath(object, path);
+        return getDocumentKeyPlan(object.getClass()).getParent(object);
+    }
+
+    /**
+     * Get the version to send with a write of the object
+     *
+     * @param object object to get version
+     * @return version, null if the class has no version field or the internal version is not set
+     */
+    public Long getVersion(Object object) {
+        OsemClassModel classModel = OsemClassModel.of(object.getClass());
+        if (classModel.getVersionField() == null) {
+            return null;
+        }
+        Long version = (Long) OsemReflectionUtils.getFieldValue(object, classModel.getVersionField());
+        if (version != null && version == 0 && classModel.getVersionType() == VersionType.INTERNAL) {
+            return null;  // never read or written
+        }
+        return version;
+    }
+
+    /**
+     * Set the version of the object read or written, ignored if the class has no version field
+     *
+     * @param object  object to set version
+     * @param version version of the document, ignored if negative (not returned by ElasticSearch)
+     */
+    public void setVersion(Object object, long version) {
+        if (object == null || version < 0) {
+            return;
+        }
+        Field versionField = OsemClassModel.of(object.getClass()).getVersionField();
+        if (versionField == null) {
+            return;
+        }
+        try {
+            versionField.set(object, version);
+        } catch (IllegalAccessException e) {
+            throw new ElasticSearchOsemException("Failed to set version field " + versionField.getName(), e);
         }
-        Indexable indexable = (Indexable) clazz.getAnnotation(Indexable.class);
-        if (indexable == null) {
-            throw new ElasticSearchOsemException("Class " + object.getClass().getSimpleName() + " is no Indexable");
+    }
+
+    /**
+     * Set the new version of the objects written in a bulk, objects are the payloads of the bulk items
+     *
+     * @param request  bulk request with objects as payloads
+     * @param response bulk response
+     */
+    public void setVersions(BulkRequest request, BulkResponse response) {
+        List<Object> payloads = request.payloads();
+        if (payloads == null) {
+            return;
         }
-        String path = indexable.parentPath();
-        osemCache.putCache(CacheType.PARENT_PATH, clazz, path);
-        if (!path.isEmpty()) {
-            return getValueByPath(object, path);
+        for (BulkItemResponse item : response.getItems()) {
+            if (!item.isFailed() && item.getItemId() < payloads.size() && !"delete".equals(item.getOpType())) {
+                setVersion(payloads.get(item.getItemId()), item.getVersion());
+            }
         }
-        return null;
     }
 
-    private String getValueByPath(Object object, String path) {
-        String[] fieldNames = path.split("\\.");
-        Object parentObject = object;
-        for (String fieldName : fieldNames) {
-            parentObject = OsemReflectionUtils.getFieldValue(parentObject, fieldName);
-            if (parentObject == null) return null;
+    /**
+     * Get the id and routing of the object, the parent id is used as routing if the object has no routing
+     *
+     * @param object object to get key
+     * @return document key
+     */
+    public DocumentKey getDocumentKey(Object object) {
+        DocumentKeyPlan plan = getDocumentKeyPlan(object.getClass());
+        Object id = plan.getId(object);
+        if (id == null) {
+            throw new ElasticSearchOsemException("Unable to find object id");
         }
-        return parentObject.toString();
+        String routing = plan.getRouting(object);
+        return new DocumentKey(id.toString(), routing != null ? routing : plan.getParent(object));
+    }
+
+    /**
+     * Get the compiled id/routing/parent accessors for class
+     *
+     * @param clazz class to get plan
+     * @return document key plan
+     */
+    public DocumentKeyPlan getDocumentKeyPlan(final Class clazz) {
+        return osemCache.load(CacheType.DOCUMENT_KEY_PLAN, clazz, new Callable<DocumentKeyPlan>() {
+            @Override
+            public DocumentKeyPlan call() throws Exception {
+                return DocumentKeyPlan.compile(clazz);
+            }
+        });
     }
 
 }
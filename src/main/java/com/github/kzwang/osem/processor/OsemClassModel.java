@@ -0,0 +1,328 @@
+package com.github.kzwang.osem.processor;
+
+import com.github.kzwang.osem.annotations.*;
+import com.github.kzwang.osem.cache.CacheType;
+import com.github.kzwang.osem.cache.OsemCache;
+import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import com.github.kzwang.osem.utils.FieldPath;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.collect.ImmutableList;
+import org.elasticsearch.common.collect.ImmutableMap;
+import org.elasticsearch.common.collect.Lists;
+import org.elasticsearch.common.collect.Maps;
+import org.elasticsearch.common.collect.Sets;
+import org.elasticsearch.index.VersionType;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Immutable model of a class, built in a single walk of the class hierarchy and cached per class.
+ * <p/>
+ * Holds the {@link Indexable} settings, the id and version fields, routing and parent paths and all OSEM annotated properties,
+ * so mapping generation, Jackson introspection and document key extraction never scan the class again.
+ */
+public class OsemClassModel {
+
+    private static final OsemCache osemCache = OsemCache.getInstance();
+
+    private final Class clazz;
+
+    private final Indexable indexable;
+
+    private final String indexTypeName;
+
+    private final Field idField;
+
+    private final Field versionField;
+
+    private final VersionType versionType;
+
+    private final FieldPath routingPath;
+
+    private final FieldPath parentPath;
+
+    private final OsemPropertyModel timestampProperty;
+
+    private final FieldPath timestampPath;
+
+    private final List<OsemPropertyModel> properties;
+
+    private final Map<Field, OsemPropertyModel> fieldProperties;
+
+    private final Map<String, OsemPropertyModel> methodProperties;
+
+    private OsemClassModel(Class clazz, Indexable indexable, Field idField, Field versionField,
+                           Map<Field, OsemPropertyModel> fieldProperties, Map<String, OsemPropertyModel> methodProperties) {
+        this.clazz = clazz;
+        this.indexable = indexable;
+        this.indexTypeName = AnnotationMappings.getIndexTypeName(clazz.getSimpleName(), indexable);
+        this.idField = idField;
+        this.versionField = versionField;
+        this.versionType = versionField != null
+                && versionField.getAnnotation(IndexableVersion.class).type() == VersionTypeEnum.EXTERNAL
+                ? VersionType.EXTERNAL : VersionType.INTERNAL;
+        this.routingPath = indexable != null && !indexable.routingFieldPath().isEmpty()
+                ? FieldPath.compile(clazz, indexable.routingFieldPath()) : null;
+        this.parentPath = indexable != null && !indexable.parentPath().isEmpty()
+                ? FieldPath.compile(clazz, indexable.parentPath()) : null;
+        this.fieldProperties = ImmutableMap.copyOf(fieldProperties);
+        this.methodProperties = ImmutableMap.copyOf(methodProperties);
+        this.properties = ImmutableList.<OsemPropertyModel>builder()
+                .addAll(fieldProperties.values()).addAll(methodProperties.values()).build();
+        String timestampFieldPath = indexable != null ? indexable.timestampFieldPath() : "";
+        this.timestampProperty = findPropertyByName(properties, timestampFieldPath);
+        this.timestampPath = timestampProperty == null && !timestampFieldPath.isEmpty()
+                ? FieldPath.compile(clazz, timestampFieldPath) : null;
+    }
+
+    private static OsemPropertyModel findPropertyByName(List<OsemPropertyModel> properties, String name) {
+        for (OsemPropertyModel property : properties) {
+            if (name.equals(property.getName())) {
+                return property;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the cached model of the class, build it if not exist
+     *
+     * @param clazz class to get model
+     * @return model of the class
+     */
+    public static OsemClassModel of(final Class clazz) {
+        return osemCache.load(CacheType.CLASS_MODEL, clazz, new Callable<OsemClassModel>() {
+            @Override
+            public OsemClassModel call() throws Exception {
+                return build(clazz);
+            }
+        });
+    }
+
+    /**
+     * Find the property model of a field or method
+     *
+     * @param member field or method
+     * @return property model, null if the member has no OSEM annotation
+     */
+    @Nullable
+    public static OsemPropertyModel findProperty(@Nullable Member member) {
+        if (member instanceof Field) {
+            return of(member.getDeclaringClass()).getProperty((Field) member);
+        } else if (member instanceof Method) {
+            return of(member.getDeclaringClass()).getProperty((Method) member);
+        }
+        return null;
+    }
+
+    private static OsemClassModel build(Class clazz) {
+        Map<Field, OsemPropertyModel> fieldProperties = Maps.newLinkedHashMap();
+        Map<String, OsemPropertyModel> methodProperties = Maps.newLinkedHashMap();
+        List<Field> idFields = Lists.newArrayList();
+        Field versionField = null;
+        for (Class type : getHierarchy(clazz)) {
+            for (Field field : type.getDeclaredFields()) {
+                if (field.isAnnotationPresent(IndexableId.class)) {
+                    idFields.add(field);
+                }
+                if (field.isAnnotationPresent(IndexableVersion.class) && versionField == null) {
+                    if (field.getType() != long.class && field.getType() != Long.class) {
+                        throw new ElasticSearchOsemException("Version field must be long, class: " + clazz.getSimpleName()
+                                + ", field: " + field.getName());
+                    }
+                    versionField = field;
+                    versionField.setAccessible(true);
+                }
+                OsemPropertyModel property = buildProperty(field);
+                if (property != null) {
+                    fieldProperties.put(field, property);
+                }
+            }
+            for (Method method : type.getDeclaredMethods()) {
+                if (method.isBridge()) continue;
+                String signature = getSignature(method);
+                if (methodProperties.containsKey(signature)) continue;  // overridden in sub class
+                OsemPropertyModel property = buildProperty(method);
+                if (property != null) {
+                    methodProperties.put(signature, property);
+                }
+            }
+        }
+
+        Field idField = null;
+        if (idFields.size() == 1) {
+            idField = idFields.get(0);
+            idField.setAccessible(true);
+        }
+        return new OsemClassModel(clazz, (Indexable) clazz.getAnnotation(Indexable.class), idField, versionField, fieldProperties, methodProperties);
+    }
+
+    private static OsemPropertyModel buildProperty(AccessibleObject member) {
+        IndexableProperty indexableProperty = member.getAnnotation(IndexableProperty.class);
+        IndexableComponent indexableComponent = member.getAnnotation(IndexableComponent.class);
+        IndexableProperties indexableProperties = member.getAnnotation(IndexableProperties.class);
+        if (indexableProperty == null && indexableComponent == null && indexableProperties == null) {
+            return null;
+        }
+        return new OsemPropertyModel(member, indexableProperty, indexableComponent, indexableProperties);
+    }
+
+    /**
+     * The class, its super classes and all interfaces, sub types first
+     */
+    private static Set<Class> getHierarchy(Class clazz) {
+        Set<Class> hierarchy = Sets.newLinkedHashSet();
+        LinkedList<Class> queue = Lists.newLinkedList();
+        queue.add(clazz);
+        while (!queue.isEmpty()) {
+            Class type = queue.removeFirst();
+            if (type == null || type == Object.class || !hierarchy.add(type)) continue;
+            queue.add(type.getSuperclass());
+            queue.addAll(Arrays.asList(type.getInterfaces()));
+        }
+        return hierarchy;
+    }
+
+    private static String getSignature(Method method) {
+        return method.getName() + Arrays.toString(method.getParameterTypes());
+    }
+
+    public Class getType() {
+        return clazz;
+    }
+
+    public boolean isIndexable() {
+        return indexable != null;
+    }
+
+    /**
+     * @return true if {@link Indexable#dirtyTracking()} is enabled
+     */
+    public boolean isDirtyTracking() {
+        return indexable != null && indexable.dirtyTracking();
+    }
+
+    /**
+     * @return {@link Indexable} annotation of the class, null if not indexable
+     */
+    @Nullable
+    public Indexable getIndexable() {
+        return indexable;
+    }
+
+    /**
+     * @return index type name of the class
+     */
+    public String getIndexTypeName() {
+        return indexTypeName;
+    }
+
+    /**
+     * @return accessible field annotated with {@link IndexableId}, null if there isn't exactly one
+     */
+    @Nullable
+    public Field getIdField() {
+        return idField;
+    }
+
+    /**
+     * @return accessible field annotated with {@link IndexableVersion}, null if not set
+     */
+    @Nullable
+    public Field getVersionField() {
+        return versionField;
+    }
+
+    /**
+     * @return how the version is checked on write, {@link VersionType#INTERNAL} if no version field
+     */
+    public VersionType getVersionType() {
+        return versionType;
+    }
+
+    /**
+     * @return routing path, null if not set
+     */
+    @Nullable
+    public FieldPath getRoutingPath() {
+        return routingPath;
+    }
+
+    /**
+     * @return parent path, null if not set
+     */
+    @Nullable
+    public FieldPath getParentPath() {
+        return parentPath;
+    }
+
+    /**
+     * @return true if {@link Indexable#timestampFieldPath()} is set
+     */
+    public boolean hasTimestamp() {
+        return timestampProperty != null || timestampPath != null;
+    }
+
+    /**
+     * Get the value at {@link Indexable#timestampFieldPath()}, the path is matched against property names first
+     * (so getter methods work), then resolved as a field path
+     *
+     * @param object object to get timestamp
+     * @return timestamp value, null if not set or class has no timestamp path
+     */
+    @Nullable
+    public Object getTimestamp(Object object) {
+        if (timestampProperty != null) {
+            return timestampProperty.getValue(object);
+        }
+        return timestampPath != null ? timestampPath.getValue(object) : null;
+    }
+
+    /**
+     * @return all OSEM annotated fields then methods, including the inherited ones
+     */
+    public List<OsemPropertyModel> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Get the json property name of a field
+     *
+     * @param name java field name or json property name
+     * @return json property name, the name itself if no field has this java name
+     */
+    public String getPropertyName(String name) {
+        for (OsemPropertyModel property : properties) {
+            if (name.equals(property.getJavaName())) {
+                return property.getName();
+            }
+        }
+        return name;
+    }
+
+    @Nullable
+    public OsemPropertyModel getProperty(Field field) {
+        return fieldProperties.get(field);
+    }
+
+    /**
+     * Get the property of a method, annotations of overridden methods are inherited
+     *
+     * @param method method declared in or inherited by this class
+     * @return property model, null if the method has no OSEM annotation
+     */
+    @Nullable
+    public OsemPropertyModel getProperty(Method method) {
+        return methodProperties.get(getSignature(method));
+    }
+
+}
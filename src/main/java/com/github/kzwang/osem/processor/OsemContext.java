@@ -0,0 +1,54 @@
+package com.github.kzwang.osem.processor;
+
+import com.github.kzwang.osem.cache.NearCache;
+import org.elasticsearch.common.Preconditions;
+
+/**
+ * Shared OSEM state, holds the {@link ObjectProcessor} whose Jackson mappers and per-class readers/writers are
+ * shared by all indexers and searchers created with this context, and the {@link NearCache} they keep in sync
+ * <p/>
+ * Indexers and searchers are cheap to create once they share a context, e.g. one per tenant index.
+ */
+public class OsemContext {
+
+    private static final class Holder {
+        private static final OsemContext instance = new OsemContext(new ObjectProcessor());
+    }
+
+    private final ObjectProcessor objectProcessor;
+
+    private final NearCache nearCache = new NearCache();
+
+    /**
+     * Create a context, prefer {@link #getInstance()} unless a differently configured processor is needed
+     *
+     * @param objectProcessor processor shared by everything using this context
+     */
+    public OsemContext(ObjectProcessor objectProcessor) {
+        this.objectProcessor = Preconditions.checkNotNull(objectProcessor, "objectProcessor must not be null");
+    }
+
+    /**
+     * Get the default singleton context
+     *
+     * @return instance
+     */
+    public static OsemContext getInstance() {
+        return Holder.instance;
+    }
+
+    /**
+     * @return processor shared by everything using this context
+     */
+    public ObjectProcessor getObjectProcessor() {
+        return objectProcessor;
+    }
+
+    /**
+     * @return near cache of get by id, kept up to date by the indexers of this context
+     */
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+}
@@ -0,0 +1,276 @@
+package com.github.kzwang.osem.processor;
+
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.github.kzwang.osem.annotations.*;
+import com.github.kzwang.osem.converter.DateDeserializer;
+import com.github.kzwang.osem.converter.DateSerializer;
+import com.github.kzwang.osem.converter.RawJsonDeSerializer;
+import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import com.github.kzwang.osem.utils.OsemReflectionUtils;
+import org.elasticsearch.common.Nullable;
+
+import java.lang.reflect.*;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * A field or method annotated with {@link IndexableProperty}, {@link IndexableComponent} or {@link IndexableProperties},
+ * with everything derived from the annotations resolved once
+ */
+public class OsemPropertyModel {
+
+    private final AccessibleObject member;
+
+    private final String javaName;
+
+    private final Class rawType;
+
+    private final Class elementType;
+
+    private final IndexableProperty indexableProperty;
+
+    private final IndexableComponent indexableComponent;
+
+    private final IndexableProperties indexableProperties;
+
+    private final String explicitName;
+
+    private final JsonInclude jsonInclude;
+
+    private final Class<? extends JsonSerializer> customSerializer;
+
+    private final Class<? extends JsonSerializer> serializer;
+
+    private final Class<? extends JsonDeserializer> deserializer;
+
+    OsemPropertyModel(AccessibleObject member, IndexableProperty indexableProperty, IndexableComponent indexableComponent,
+                      IndexableProperties indexableProperties) {
+        this.member = member;
+        this.indexableProperty = indexableProperty;
+        this.indexableComponent = indexableComponent;
+        this.indexableProperties = indexableProperties;
+        if (member instanceof Field) {
+            Field field = (Field) member;
+            this.javaName = field.getName();
+            this.rawType = field.getType();
+            this.elementType = resolveElementType(field.getType(), field.getGenericType());
+        } else {
+            Method method = (Method) member;
+            this.javaName = null;
+            this.rawType = method.getReturnType();
+            this.elementType = resolveElementType(method.getReturnType(), method.getGenericReturnType());
+        }
+        this.explicitName = resolveExplicitName();
+        this.jsonInclude = resolveJsonInclude();
+        this.customSerializer = resolveCustomSerializer();
+        this.serializer = resolveSerializer();
+        this.deserializer = resolveDeserializer();
+    }
+
+    /**
+     * @return the annotated field or method
+     */
+    public AccessibleObject getMember() {
+        return member;
+    }
+
+    /**
+     * @return name of the field, null for methods
+     */
+    @Nullable
+    public String getJavaName() {
+        return javaName;
+    }
+
+    /**
+     * @return property name, annotation name has priority over java name. Null for methods without annotation name
+     */
+    @Nullable
+    public String getName() {
+        return explicitName != null ? explicitName : javaName;
+    }
+
+    /**
+     * @return name set in annotation, null if not set
+     */
+    @Nullable
+    public String getExplicitName() {
+        return explicitName;
+    }
+
+    /**
+     * @return type of the field or return type of the method
+     */
+    public Class getRawType() {
+        return rawType;
+    }
+
+    /**
+     * @return element type for collections, same as {@link #getRawType()} otherwise
+     */
+    public Class getElementType() {
+        return elementType;
+    }
+
+    public boolean isCollection() {
+        return Collection.class.isAssignableFrom(rawType);
+    }
+
+    /**
+     * Read the value of the field or call the getter method
+     *
+     * @param object object to read value from
+     * @return value of the property
+     */
+    public Object getValue(Object object) {
+        if (member instanceof Field) {
+            return OsemReflectionUtils.getFieldValue(object, (Field) member);
+        }
+        Method method = (Method) member;
+        try {
+            if (!method.isAccessible()) {
+                method.setAccessible(true);
+            }
+            return method.invoke(object);
+        } catch (IllegalAccessException e) {
+            throw new ElasticSearchOsemException("Failed to call method " + method.getName(), e);
+        } catch (InvocationTargetException e) {
+            throw new ElasticSearchOsemException("Failed to call method " + method.getName(), e.getCause());
+        }
+    }
+
+    @Nullable
+    public IndexableProperty getIndexableProperty() {
+        return indexableProperty;
+    }
+
+    @Nullable
+    public IndexableComponent getIndexableComponent() {
+        return indexableComponent;
+    }
+
+    @Nullable
+    public IndexableProperties getIndexableProperties() {
+        return indexableProperties;
+    }
+
+    /**
+     * @return json include set in annotation, null if default
+     */
+    @Nullable
+    public JsonInclude getJsonInclude() {
+        return jsonInclude;
+    }
+
+    /**
+     * @return serializer set in annotation, null if not set
+     */
+    @Nullable
+    public Class<? extends JsonSerializer> getCustomSerializer() {
+        return customSerializer;
+    }
+
+    /**
+     * @return serializer to use for the value (or content of collection), null to use default
+     */
+    @Nullable
+    public Class<? extends JsonSerializer> getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * @return deserializer to use for the value (or content of collection), null to use default
+     */
+    @Nullable
+    public Class<? extends JsonDeserializer> getDeserializer() {
+        return deserializer;
+    }
+
+    private String resolveExplicitName() {
+        if (indexableProperty != null && !indexableProperty.name().isEmpty()) {
+            return indexableProperty.name();
+        }
+        if (indexableComponent != null && !indexableComponent.name().isEmpty()) {
+            return indexableComponent.name();
+        }
+        if (indexableProperties != null && !indexableProperties.name().isEmpty()) {
+            return indexableProperties.name();
+        }
+        return null;
+    }
+
+    private JsonInclude resolveJsonInclude() {
+        if (indexableProperty != null && indexableProperty.jsonInclude() != JsonInclude.DEFAULT) {
+            return indexableProperty.jsonInclude();
+        }
+        if (indexableComponent != null && indexableComponent.jsonInclude() != JsonInclude.DEFAULT) {
+            return indexableComponent.jsonInclude();
+        }
+        if (indexableProperties != null && indexableProperties.jsonInclude() != JsonInclude.DEFAULT) {
+            return indexableProperties.jsonInclude();
+        }
+        return null;
+    }
+
+    private Class<? extends JsonSerializer> resolveCustomSerializer() {
+        if (indexableComponent != null && indexableComponent.serializer() != JsonSerializer.class) {
+            return indexableComponent.serializer();
+        }
+        if (indexableProperty != null && indexableProperty.serializer() != JsonSerializer.class) {
+            return indexableProperty.serializer();
+        }
+        if (indexableProperties != null && indexableProperties.serializer() != JsonSerializer.class) {
+            return indexableProperties.serializer();
+        }
+        return null;
+    }
+
+    private Class<? extends JsonSerializer> resolveSerializer() {
+        if (customSerializer != null) {
+            return customSerializer;
+        }
+        if (indexableProperty != null && elementType.equals(Date.class)) {  // use custom date serializer
+            return DateSerializer.class;
+        }
+        return null;
+    }
+
+    private Class<? extends JsonDeserializer> resolveDeserializer() {
+        if (indexableComponent != null && indexableComponent.deserializer() != JsonDeserializer.class) {
+            return indexableComponent.deserializer();
+        }
+        if (indexableProperty != null) {
+            if (indexableProperty.deserializer() != JsonDeserializer.class) {
+                return indexableProperty.deserializer();
+            }
+            if (elementType.equals(Date.class)) {  // use custom date deserializer
+                return DateDeserializer.class;
+            }
+            if (indexableProperty.type().equals(TypeEnum.JSON)) {  // use custom deserializer for raw json field
+                return RawJsonDeSerializer.class;
+            }
+        }
+        if (indexableProperties != null && indexableProperties.deserializer() != JsonDeserializer.class) {
+            return indexableProperties.deserializer();
+        }
+        return null;
+    }
+
+    private static Class resolveElementType(Class rawType, Type genericType) {
+        if (!Collection.class.isAssignableFrom(rawType)) {
+            return rawType;
+        }
+        if (genericType instanceof ParameterizedType) {
+            Type elementType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            if (elementType instanceof Class) {
+                return (Class) elementType;
+            }
+            if (elementType instanceof ParameterizedType) {
+                return (Class) ((ParameterizedType) elementType).getRawType();
+            }
+        }
+        return Object.class;
+    }
+
+}
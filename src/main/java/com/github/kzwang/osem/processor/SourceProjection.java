@@ -0,0 +1,176 @@
+package com.github.kzwang.osem.processor;
+
+import org.elasticsearch.common.Preconditions;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.collect.Sets;
+import org.elasticsearch.search.fetch.source.FetchSourceContext;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Subset of the properties of an indexable class to fetch, translated to "_source" includes and excludes so only
+ * the selected properties are sent over the network and deserialized.
+ * <p/>
+ * Create it from property names with {@link #include(Class, String...)} and {@link #exclude(Class, String...)}, or
+ * from the properties of a DTO class or an interface implemented by the indexable class with {@link #of(Class, Class)}.
+ *
+ * @param <T> type of the projected objects
+ */
+public class SourceProjection<T> {
+
+    private final Class sourceClass;
+
+    private final Class<T> projectionClass;
+
+    private final Class targetClass;
+
+    private final String[] includes;
+
+    private final String[] excludes;
+
+    private SourceProjection(Class sourceClass, Class<T> projectionClass, Class targetClass, String[] includes, String[] excludes) {
+        this.sourceClass = sourceClass;
+        this.projectionClass = projectionClass;
+        this.targetClass = targetClass;
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    /**
+     * Only fetch some properties
+     *
+     * @param clazz         indexable class
+     * @param propertyNames java field names or json names, dotted paths select properties of components
+     * @return projection deserialized to the indexable class
+     */
+    public static <T> SourceProjection<T> include(Class<T> clazz, String... propertyNames) {
+        Preconditions.checkArgument(propertyNames.length > 0, "Must have at least one property to include");
+        return new SourceProjection<T>(clazz, clazz, clazz, toJsonNames(clazz, propertyNames), Strings.EMPTY_ARRAY);
+    }
+
+    /**
+     * Fetch all properties except some
+     *
+     * @param clazz         indexable class
+     * @param propertyNames java field names or json names, dotted paths select properties of components
+     * @return projection deserialized to the indexable class
+     */
+    public static <T> SourceProjection<T> exclude(Class<T> clazz, String... propertyNames) {
+        Preconditions.checkArgument(propertyNames.length > 0, "Must have at least one property to exclude");
+        return new SourceProjection<T>(clazz, clazz, clazz, Strings.EMPTY_ARRAY, toJsonNames(clazz, propertyNames));
+    }
+
+    /**
+     * Only fetch the properties of a projection type.
+     * <p/>
+     * For an interface, the properties of its getters are fetched and deserialized to the indexable class implementing it.
+     * For a class, its OSEM annotated properties are fetched by their json names and deserialized to the projection class.
+     *
+     * @param clazz           indexable class
+     * @param projectionClass interface implemented by the indexable class, or DTO class
+     * @return projection deserialized to the projection type
+     */
+    public static <T> SourceProjection<T> of(Class clazz, Class<T> projectionClass) {
+        if (projectionClass.isInterface()) {
+            Preconditions.checkArgument(projectionClass.isAssignableFrom(clazz),
+                    "Class " + clazz.getSimpleName() + " doesn't implement " + projectionClass.getSimpleName());
+            return new SourceProjection<T>(clazz, projectionClass, clazz,
+                    toJsonNames(clazz, getGetterNames(projectionClass)), Strings.EMPTY_ARRAY);
+        }
+        return new SourceProjection<T>(clazz, projectionClass, projectionClass, getPropertyNames(projectionClass), Strings.EMPTY_ARRAY);
+    }
+
+    private static String[] toJsonNames(Class clazz, String... propertyNames) {
+        OsemClassModel classModel = OsemClassModel.of(clazz);
+        String[] jsonNames = new String[propertyNames.length];
+        for (int i = 0; i < propertyNames.length; i++) {
+            String propertyName = propertyNames[i];
+            int dot = propertyName.indexOf('.');
+            jsonNames[i] = dot < 0 ? classModel.getPropertyName(propertyName)
+                    : classModel.getPropertyName(propertyName.substring(0, dot)) + propertyName.substring(dot);
+        }
+        return jsonNames;
+    }
+
+    private static String[] getGetterNames(Class projectionClass) {
+        Set<String> names = Sets.newLinkedHashSet();
+        for (Method method : projectionClass.getMethods()) {
+            if (method.getParameterTypes().length > 0 || method.getReturnType() == void.class) continue;
+            String name = method.getName();
+            if (name.startsWith("get") && name.length() > 3) {
+                names.add(Character.toLowerCase(name.charAt(3)) + name.substring(4));
+            } else if (name.startsWith("is") && name.length() > 2) {
+                names.add(Character.toLowerCase(name.charAt(2)) + name.substring(3));
+            }
+        }
+        Preconditions.checkArgument(!names.isEmpty(), "Projection " + projectionClass.getSimpleName() + " has no getter");
+        return names.toArray(new String[names.size()]);
+    }
+
+    private static String[] getPropertyNames(Class projectionClass) {
+        Set<String> names = Sets.newLinkedHashSet();
+        for (OsemPropertyModel property : OsemClassModel.of(projectionClass).getProperties()) {
+            if (property.getName() != null) {
+                names.add(property.getName());
+            }
+        }
+        Preconditions.checkArgument(!names.isEmpty(), "Projection " + projectionClass.getSimpleName() + " has no OSEM annotated property");
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * @return indexable class the documents are stored as
+     */
+    public Class getSourceClass() {
+        return sourceClass;
+    }
+
+    /**
+     * @return type of the projected objects
+     */
+    public Class<T> getProjectionClass() {
+        return projectionClass;
+    }
+
+    /**
+     * @return class the filtered source is deserialized to
+     */
+    public Class getTargetClass() {
+        return targetClass;
+    }
+
+    public String[] getIncludes() {
+        return includes;
+    }
+
+    public String[] getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * @return fetch source context for get and multi get requests
+     */
+    public FetchSourceContext getFetchSourceContext() {
+        return new FetchSourceContext(includes, excludes);
+    }
+
+    /**
+     * Deserialize a filtered source
+     *
+     * @param processor processor to deserialize with
+     * @param source    filtered source
+     * @return projected object
+     */
+    @SuppressWarnings("unchecked")
+    public T fromSource(ObjectProcessor processor, BytesReference source) {
+        return (T) processor.fromPartialJsonBytes(source, targetClass);
+    }
+
+    @Override
+    public String toString() {
+        return sourceClass.getSimpleName() + "[includes=" + Arrays.toString(includes) + ", excludes=" + Arrays.toString(excludes) + "]";
+    }
+}
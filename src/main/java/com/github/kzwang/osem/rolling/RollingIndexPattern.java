@@ -0,0 +1,260 @@
+package com.github.kzwang.osem.rolling;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Preconditions;
+import org.elasticsearch.common.collect.Lists;
+import org.elasticsearch.common.joda.time.DateTime;
+import org.elasticsearch.common.joda.time.DateTimeZone;
+import org.elasticsearch.common.joda.time.format.DateTimeFormat;
+import org.elasticsearch.common.joda.time.format.DateTimeFormatter;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Naming pattern of time based indices, e.g. "tweets-yyyy.MM.dd" gives one index per UTC day like "tweets-2014.01.31".
+ * <p/>
+ * The pattern is a fixed prefix followed by a Joda date pattern, the interval of each index is the smallest date unit
+ * in the date pattern. Weekly patterns must use the week year "xxxx" with "ww", so the first days of January stay
+ * in the index of their week.
+ */
+public class RollingIndexPattern {
+
+    /**
+     * Time range covered by each index
+     */
+    public enum Interval {
+        HOUR, DAY, WEEK, MONTH, YEAR
+    }
+
+    private final String prefix;
+
+    private final String datePattern;
+
+    private final Interval interval;
+
+    private final DateTimeFormatter formatter;
+
+    /**
+     * Letters starting the date part in {@link #forPattern(String)}
+     */
+    private static final String DATE_LETTERS = "yYxMwdDHk";
+
+    /**
+     * @param prefix      fixed prefix of index names
+     * @param datePattern Joda date pattern appended to the prefix
+     * @param interval    time range covered by each index, must match the date pattern
+     */
+    public RollingIndexPattern(String prefix, String datePattern, Interval interval) {
+        Preconditions.checkArgument(prefix != null && !prefix.isEmpty(), "Index prefix must not be empty");
+        Preconditions.checkNotNull(interval, "Interval must not be null");
+        Preconditions.checkArgument(interval != Interval.WEEK || datePattern.indexOf('x') >= 0,
+                "Weekly date pattern must use week year 'xxxx': " + datePattern);
+        this.prefix = prefix;
+        this.datePattern = datePattern;
+        this.interval = interval;
+        this.formatter = DateTimeFormat.forPattern(datePattern).withZoneUTC();
+    }
+
+    /**
+     * Parse pattern like "tweets-yyyy.MM.dd" or "logs-yyyy-MM-dd". The date pattern starts at the first run of a
+     * repeated date letter (y, Y, x, M, w, d, D, H, k) after a separator, from which all letter runs are date letter
+     * runs. Use {@link #forPattern(String, String)} if the prefix can't be told apart
+     *
+     * @param pattern index name pattern
+     * @return rolling index pattern
+     */
+    public static RollingIndexPattern forPattern(String pattern) {
+        int dateStart = -1;
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {  // quoted literal
+                int close = pattern.indexOf('\'', i + 1);
+                i = close < 0 ? pattern.length() : close + 1;
+                continue;
+            }
+            if (!Character.isLetter(c)) {
+                i++;
+                continue;
+            }
+            int end = i;
+            while (end < pattern.length() && pattern.charAt(end) == c) {
+                end++;
+            }
+            boolean dateRun = DATE_LETTERS.indexOf(c) >= 0 && (end == pattern.length() || !Character.isLetter(pattern.charAt(end)));
+            if (!dateRun) {
+                dateStart = -1;
+                while (end < pattern.length() && Character.isLetter(pattern.charAt(end))) {
+                    end++;  // skip the rest of a word
+                }
+            } else if (dateStart < 0 && i > 0 && !Character.isLetter(pattern.charAt(i - 1))) {
+                dateStart = i;
+            }
+            i = end;
+        }
+        Preconditions.checkArgument(dateStart > 0, "Index pattern must be in the form of prefix-datePattern: " + pattern);
+        return forPattern(pattern.substring(0, dateStart), pattern.substring(dateStart));
+    }
+
+    /**
+     * Create pattern with interval derived from the date pattern
+     *
+     * @param prefix      fixed prefix of index names
+     * @param datePattern Joda date pattern appended to the prefix
+     * @return rolling index pattern
+     */
+    public static RollingIndexPattern forPattern(String prefix, String datePattern) {
+        return new RollingIndexPattern(prefix, datePattern, getInterval(datePattern));
+    }
+
+    public static RollingIndexPattern daily(String prefix) {
+        return new RollingIndexPattern(prefix, "yyyy.MM.dd", Interval.DAY);
+    }
+
+    public static RollingIndexPattern weekly(String prefix) {
+        return new RollingIndexPattern(prefix, "xxxx.ww", Interval.WEEK);
+    }
+
+    public static RollingIndexPattern monthly(String prefix) {
+        return new RollingIndexPattern(prefix, "yyyy.MM", Interval.MONTH);
+    }
+
+    private static Interval getInterval(String datePattern) {
+        if (datePattern.indexOf('H') >= 0 || datePattern.indexOf('k') >= 0) {
+            return Interval.HOUR;
+        } else if (datePattern.indexOf('d') >= 0 || datePattern.indexOf('D') >= 0) {
+            return Interval.DAY;
+        } else if (datePattern.indexOf('w') >= 0) {
+            return Interval.WEEK;
+        } else if (datePattern.indexOf('M') >= 0) {
+            return Interval.MONTH;
+        }
+        return Interval.YEAR;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getDatePattern() {
+        return datePattern;
+    }
+
+    public Interval getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return wildcard matching all indices of this pattern, e.g. "tweets-*"
+     */
+    public String getWildcard() {
+        return prefix + "*";
+    }
+
+    /**
+     * Get the index for a timestamp
+     *
+     * @param timestamp milliseconds since epoch
+     * @return index name
+     */
+    public String getIndexName(long timestamp) {
+        return prefix + formatter.print(timestamp);
+    }
+
+    public String getIndexName(Date date) {
+        return getIndexName(date.getTime());
+    }
+
+    /**
+     * Get all indices which may contain documents between from and to, in time order
+     *
+     * @param from start of the window, inclusive
+     * @param to   end of the window, inclusive
+     * @return index names
+     */
+    public String[] getIndexNames(Date from, Date to) {
+        Preconditions.checkArgument(!from.after(to), "Window start must not be after window end");
+        List<String> indexNames = Lists.newArrayList();
+        for (DateTime start = floor(from.getTime()); start.getMillis() <= to.getTime(); start = next(start)) {
+            indexNames.add(getIndexName(start.getMillis()));
+        }
+        return indexNames.toArray(new String[indexNames.size()]);
+    }
+
+    /**
+     * Check if an index is named by this pattern, the whole name after the prefix must be a date of the pattern
+     *
+     * @param indexName name of the index
+     * @return true if the index belongs to this pattern
+     */
+    public boolean matches(String indexName) {
+        return getStart(indexName) != null;
+    }
+
+    /**
+     * Get the start of the time range covered by an index
+     *
+     * @param indexName name of the index
+     * @return start of the index, null if the index doesn't match this pattern
+     */
+    @Nullable
+    public Date getStart(String indexName) {
+        if (!indexName.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return new Date(floor(formatter.parseMillis(indexName.substring(prefix.length()))).getMillis());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the end of the time range covered by an index
+     *
+     * @param indexName name of the index
+     * @return end of the index, exclusive. Null if the index doesn't match this pattern
+     */
+    @Nullable
+    public Date getEnd(String indexName) {
+        Date start = getStart(indexName);
+        return start == null ? null : next(new DateTime(start.getTime(), DateTimeZone.UTC)).toDate();
+    }
+
+    private DateTime floor(long timestamp) {
+        DateTime dateTime = new DateTime(timestamp, DateTimeZone.UTC);
+        switch (interval) {
+            case HOUR:
+                return dateTime.hourOfDay().roundFloorCopy();
+            case DAY:
+                return dateTime.dayOfMonth().roundFloorCopy();
+            case WEEK:
+                return dateTime.weekOfWeekyear().roundFloorCopy();
+            case MONTH:
+                return dateTime.monthOfYear().roundFloorCopy();
+            default:
+                return dateTime.year().roundFloorCopy();
+        }
+    }
+
+    private DateTime next(DateTime start) {
+        switch (interval) {
+            case HOUR:
+                return start.plusHours(1);
+            case DAY:
+                return start.plusDays(1);
+            case WEEK:
+                return start.plusWeeks(1);
+            case MONTH:
+                return start.plusMonths(1);
+            default:
+                return start.plusYears(1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return prefix + datePattern;
+    }
+}
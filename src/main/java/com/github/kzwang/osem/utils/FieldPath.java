@@ -0,0 +1,83 @@
+package com.github.kzwang.osem.utils;
+
+import org.elasticsearch.common.Preconditions;
+
+import java.lang.reflect.Field;
+import java.util.Set;
+
+import static org.reflections.ReflectionUtils.getAllFields;
+import static org.reflections.ReflectionUtils.withName;
+
+/**
+ * A dotted field path (e.g. "user.id") resolved once into a chain of accessible {@link Field}s
+ */
+public class FieldPath {
+
+    private final String path;
+
+    private final String[] fieldNames;
+
+    /**
+     * Resolved field for each hop, null if the hop can only be resolved from the runtime class
+     */
+    private final Field[] fields;
+
+    private FieldPath(String path, String[] fieldNames, Field[] fields) {
+        this.path = path;
+        this.fieldNames = fieldNames;
+        this.fields = fields;
+    }
+
+    /**
+     * Resolve the path against the declared field types starting from root class
+     *
+     * @param rootClass class the path starts from
+     * @param path      dotted field path
+     * @return compiled field path
+     */
+    public static FieldPath compile(Class rootClass, String path) {
+        Preconditions.checkArgument(path != null && !path.isEmpty(), "Field path must not be empty");
+        String[] fieldNames = path.split("\\.");
+        Field[] fields = new Field[fieldNames.length];
+        Class currentClass = rootClass;
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (currentClass == null) {
+                break;
+            }
+            Set<Field> candidates = getAllFields(currentClass, withName(fieldNames[i]));
+            if (candidates.size() != 1) {
+                break;  // declared type doesn't have the field, resolve the rest at runtime
+            }
+            Field field = candidates.iterator().next();
+            field.setAccessible(true);
+            fields[i] = field;
+            currentClass = field.getType();
+        }
+        return new FieldPath(path, fieldNames, fields);
+    }
+
+    /**
+     * Get the value at the end of the path
+     *
+     * @param object object the path starts from
+     * @return value, null if any value on the path is null
+     */
+    public Object getValue(Object object) {
+        Object current = object;
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            if (field != null) {
+                current = OsemReflectionUtils.getFieldValue(current, field);
+            } else {
+                current = OsemReflectionUtils.getFieldValue(current, fieldNames[i]);
+            }
+            if (current == null) return null;
+        }
+        return current;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+}
@@ -1,7 +1,7 @@
 package com.github.kzwang.osem.utils;
 
-import com.github.kzwang.osem.annotations.IndexableId;
 import com.github.kzwang.osem.exception.ElasticSearchOsemException;
+import com.github.kzwang.osem.processor.OsemClassModel;
 import org.elasticsearch.common.Preconditions;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
@@ -37,7 +37,9 @@ public class OsemReflectionUtils {
 
     public static Object getFieldValue(Object object, Field field) {
         try {
-            field.setAccessible(true);
+            if (!field.isAccessible()) {
+                field.setAccessible(true);
+            }
             return field.get(object);
         } catch (IllegalAccessException e) {
             logger.error("Failed to get value from field", e);
@@ -47,9 +49,9 @@ public class OsemReflectionUtils {
 
 
     public static Field getIdField(Class clazz) {
-        Set<Field> fields = getAllFields(clazz, withAnnotation(IndexableId.class));
-        Preconditions.checkArgument(fields.size() == 1, "Unable to find id field for class {}", clazz.getSimpleName());
-        return fields.iterator().next();
+        Field field = OsemClassModel.of(clazz).getIdField();
+        Preconditions.checkArgument(field != null, "Unable to find id field for class {}", clazz.getSimpleName());
+        return field;
     }
 
 
@@ -2,14 +2,37 @@ package com.github.kzwang.osem.api;
 
 
 import com.carrotsearch.randomizedtesting.annotations.*;
+import com.github.kzwang.osem.annotations.Indexable;
+import com.github.kzwang.osem.annotations.IndexableId;
+import com.github.kzwang.osem.annotations.IndexableProperty;
+import com.github.kzwang.osem.annotations.IndexableVersion;
+import com.github.kzwang.osem.bootstrap.OsemBootstrap;
+import com.github.kzwang.osem.bulk.OsemBulkProcessor;
+import com.github.kzwang.osem.exception.OsemVersionConflictException;
+import com.github.kzwang.osem.impl.GetByIdBatcher;
+import com.github.kzwang.osem.impl.ParallelHitDeserializer;
+import com.github.kzwang.osem.impl.RollingElasticSearchIndexerImpl;
 import com.github.kzwang.osem.model.TweetComment;
+import com.github.kzwang.osem.model.TweetSummary;
+import com.github.kzwang.osem.processor.DocumentKey;
+import com.github.kzwang.osem.processor.SourceProjection;
+import com.github.kzwang.osem.rolling.RollingIndexPattern;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.cache.CacheStats;
+import org.elasticsearch.common.collect.Lists;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ListenableFuture;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.node.Node;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.sort.SortOrder;
 import com.github.kzwang.osem.impl.ElasticSearchIndexerImpl;
 import com.github.kzwang.osem.impl.ElasticSearchSearcherImpl;
 import com.github.kzwang.osem.model.Tweet;
@@ -20,7 +43,19 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.elasticsearch.common.io.Streams.copyToStringFromClasspath;
 import static org.hamcrest.Matchers.*;
@@ -38,6 +73,8 @@ public class ElasticSearchOsemIntegrationTest extends AbstractOsemTest {
 
     private ElasticSearchIndexer indexer;
 
+    private ElasticSearchAsyncIndexer asyncIndexer;
+
     private ElasticSearchSearcher searcher;
 
     private Node node;
@@ -46,7 +83,9 @@ public class ElasticSearchOsemIntegrationTest extends AbstractOsemTest {
     public void setUp() {
         node = nodeBuilder().local(true).node();
         Client client = node.client();
-        indexer = new ElasticSearchIndexerImpl(client, "test");
+        ElasticSearchIndexerImpl indexerImpl = new ElasticSearchIndexerImpl(client, "test");
+        indexer = indexerImpl;
+        asyncIndexer = indexerImpl;
         searcher = new ElasticSearchSearcherImpl(client, "test");
         indexer.deleteIndex();  // delete old index if exist
         indexer.createIndex();
@@ -77,6 +116,21 @@ public class ElasticSearchOsemIntegrationTest extends AbstractOsemTest {
 
     }
 
+    @Test
+    public void test_bootstrap() {
+        OsemBootstrap.Report report = OsemBootstrap.builder((ElasticSearchIndexerImpl) indexer)
+                .addPackages("com.github.kzwang.osem.model")
+                .addSearcher((ElasticSearchSearcherImpl) searcher)
+                .build().run();
+        assertThat(report.getClassReports(), hasSize(2));
+        assertThat(report.getClassReports().get(0).getClazz(), equalTo((Class) Tweet.class));
+        assertThat(report.getClassReports().get(1).getClazz(), equalTo((Class) TweetComment.class));
+
+        // mappings are on the server before any object is indexed
+        assertThat(indexer.getMapping(Tweet.class), notNullValue());
+        assertThat(indexer.getMapping(TweetComment.class), notNullValue());
+    }
+
     @Test
     public void test_index_get_delete_object() {
         assertThat(indexer.indexExist(), equalTo(true));
@@ -99,6 +153,32 @@ public class ElasticSearchOsemIntegrationTest extends AbstractOsemTest {
 
     }
 
+    @Test
+    public void test_mapping_per_index() {
+        // index into first index, mapping is created and cached
+        indexer.index(getRandomTweet());
+        assertThat(indexer.getMapping(Tweet.class), containsString("\"_size\":{\"enabled\":true}"));
+
+        // switch to another index, mapping must be created there too
+        indexer.setIndexName("test2");
+        try {
+            indexer.deleteIndex();
+            indexer.createIndex();
+            assertThat(indexer.getMapping(Tweet.class), nullValue());
+            indexer.index(getRandomTweet());
+            assertThat(indexer.getMapping(Tweet.class), containsString("\"_size\":{\"enabled\":true}"));
+
+            // recreated index must not reuse the cached mapping
+            indexer.deleteIndex();
+            indexer.createIndex();
+            indexer.index(getRandomTweet());
+            assertThat(indexer.getMapping(Tweet.class), containsString("\"_size\":{\"enabled\":true}"));
+        } finally {
+            indexer.deleteIndex();
+            indexer.setIndexName("test");
+        }
+    }
+
     @Test
     public void test_bulk_operations() {
         assertThat(indexer.indexExist(), equalTo(true));
@@ -134,6 +214,80 @@ public class ElasticSearchOsemIntegrationTest extends AbstractOsemTest {
         assertThat(searcher.count(Tweet.class, null), equalTo(0l));
     }
 
+    @Test
+    public void test_async_operations() throws InterruptedException {
+        // test index with future
+        Tweet tweet = getRandomTweet();
+        IndexResponse indexResponse = asyncIndexer.indexAsync(tweet).actionGet();
+        assertThat(Long.parseLong(indexResponse.getId()), equalTo(tweet.getId()));
+        assertThat(indexer.getMapping(Tweet.class), notNullValue());  // put without blocking before the first write
+
+        // test bulk index with listener
+        Integer count = randomIntBetween(10, 50);
+        List<Tweet> tweets = new ArrayList<Tweet>();
+        for (int i = 0; i < count; i ++) {
+            tweets.add(getRandomTweet());
+        }
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<BulkResponse> bulkResponseRef = new AtomicReference<BulkResponse>();
+        asyncIndexer.bulkIndexAsync(new ActionListener<BulkResponse>() {
+            @Override
+            public void onResponse(BulkResponse response) {
+                bulkResponseRef.set(response);
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                latch.countDown();
+            }
+        }, tweets.toArray());
+        latch.await();
+        assertThat(bulkResponseRef.get(), notNullValue());
+        assertThat(bulkResponseRef.get().hasFailures(), equalTo(false));
+        indexer.refreshIndex();
+        assertThat(searcher.count(Tweet.class, null), equalTo((long) count + 1));
+
+        // test delete with future
+        DeleteResponse deleteResponse = asyncIndexer.deleteAsync(tweet).actionGet();
+        assertThat(deleteResponse.isFound(), equalTo(true));
+    }
+
+    @Test
+    public void test_bulk_processor() throws InterruptedException {
+        Integer count = randomIntBetween(10, 50);
+        final Semaphore processed = new Semaphore(0);
+        final AtomicInteger failureCount = new AtomicInteger();
+        OsemBulkProcessor bulkProcessor = OsemBulkProcessor.builder((ElasticSearchIndexerImpl) indexer, new OsemBulkProcessor.Listener() {
+            @Override
+            public void beforeBulk(long executionId, List<Object> objects) {
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkResponse response, List<OsemBulkProcessor.ItemFailure> failures) {
+                failureCount.addAndGet(failures.size());
+                processed.release(response.getItems().length);
+            }
+
+            @Override
+            public void afterBulk(long executionId, List<Object> objects, Throwable failure) {
+                failureCount.addAndGet(objects.size());
+                processed.release(objects.size());
+            }
+        }).setBulkActions(randomIntBetween(1, 10)).setConcurrentRequests(randomIntBetween(0, 2)).build();
+
+        for (int i = 0; i < count; i ++) {
+            bulkProcessor.index(getRandomTweet());
+        }
+        assertThat(bulkProcessor.awaitClose(30, TimeUnit.SECONDS), equalTo(true));
+
+        // all bulks completed when awaitClose returns
+        assertThat(processed.availablePermits(), equalTo(count));
+        assertThat(failureCount.get(), equalTo(0));
+        indexer.refreshIndex();
+        assertThat(searcher.count(Tweet.class, null), equalTo((long) count));
+    }
+
     @Test
     public void test_search() {
         // index object
@@ -146,10 +300,401 @@ public class ElasticSearchOsemIntegrationTest extends AbstractOsemTest {
         assertThat(searchResult, hasSize(1));
         checkTweetEquals(searchResult.get(0), tweet);
 
+        // search with hit metadata
+        SearchResult<Tweet> result = searcher.searchResult(Tweet.class, searcher.getSearchRequestBuilder(Tweet.class)
+                .setQuery(QueryBuilders.matchAllQuery()).setVersion(true).addSort("id", SortOrder.ASC));
+        assertThat(result.getTotalHits(), equalTo(1L));
+        assertThat(result.getTookInMillis(), greaterThanOrEqualTo(0L));
+        assertThat(result.getHits(), hasSize(1));
+        SearchResult.Hit<Tweet> hit = result.getHits().get(0);
+        checkTweetEquals(hit.getObject(), tweet);
+        assertThat(hit.getId(), equalTo(tweet.getId().toString()));
+        assertThat(hit.getVersion(), equalTo(1L));
+        assertThat(hit.getSortValues()[0], equalTo((Object) tweet.getId()));
+        assertThat(hit.getHighlightFields(), notNullValue());
+
         // delete object
         indexer.delete(tweet);
     }
 
+    @Test
+    public void test_parallel_search() throws InterruptedException {
+        int count = randomIntBetween(50, 100);
+        List<Tweet> tweets = new ArrayList<Tweet>();
+        for (int i = 0; i < count; i ++) {
+            tweets.add(getRandomTweet());
+        }
+        indexer.bulkIndex(tweets.toArray());
+        indexer.refreshIndex();
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            ElasticSearchSearcherImpl parallelSearcher = new ElasticSearchSearcherImpl(node.client(), "test");
+            parallelSearcher.setParallelHitDeserializer(new ParallelHitDeserializer(executor, 4, 8));
+
+            // same objects in the same order as on the calling thread
+            List<Tweet> expected = searcher.search(Tweet.class, searcher.getSearchRequestBuilder(Tweet.class).setSize(count).addSort("id", SortOrder.ASC));
+            SearchResult<Tweet> result = parallelSearcher.searchResult(Tweet.class,
+                    parallelSearcher.getSearchRequestBuilder(Tweet.class).setSize(count).addSort("id", SortOrder.ASC));
+            assertThat(result.getObjects(), hasSize(count));
+            for (int i = 0; i < count; i ++) {
+                checkTweetEquals(result.getObjects().get(i), expected.get(i));
+                assertThat(result.getHits().get(i).getId(), equalTo(expected.get(i).getId().toString()));
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void test_get_by_id_batcher() throws Exception {
+        int count = randomIntBetween(20, 50);
+        List<Tweet> tweets = new ArrayList<Tweet>();
+        for (int i = 0; i < count; i ++) {
+            tweets.add(getRandomTweet());
+        }
+        indexer.bulkIndex(tweets.toArray());
+
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+        try {
+            GetByIdBatcher batcher = new GetByIdBatcher((ElasticSearchSearcherImpl) searcher, executor, 10, 50);
+            List<ListenableFuture<Tweet>> futures = new ArrayList<ListenableFuture<Tweet>>();
+            for (Tweet tweet : tweets) {
+                futures.add(batcher.getByIdAsync(Tweet.class, tweet.getId().toString(), null));
+            }
+            // same id gets its own object, missing id completes with null
+            ListenableFuture<Tweet> duplicate = batcher.getByIdAsync(Tweet.class, tweets.get(count - 1).getId().toString(), null);
+            assertThat(batcher.getById(Tweet.class, "missing"), nullValue());
+
+            for (int i = 0; i < count; i ++) {
+                checkTweetEquals(futures.get(i).get(10, TimeUnit.SECONDS), tweets.get(i));
+            }
+            checkTweetEquals(duplicate.get(10, TimeUnit.SECONDS), tweets.get(count - 1));
+            assertThat(duplicate.get(), not(sameInstance(futures.get(count - 1).get())));
+
+            // a batch that can't be scheduled fails, later gets of the same id don't wait for it
+            executor.shutdown();
+            for (int i = 0; i < 2; i ++) {
+                try {
+                    batcher.getById(Tweet.class, "rejected");
+                    fail("Get must fail after executor shut down");
+                } catch (RejectedExecutionException e) {
+                    // expected
+                }
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Indexable(name = "versioned_user")
+    public static class VersionedUser {
+
+        @IndexableId
+        @IndexableProperty
+        private String id;
+
+        @IndexableProperty
+        private String name;
+
+        @IndexableVersion
+        private Long version;
+    }
+
+    @Test
+    public void test_version() {
+        VersionedUser user = new VersionedUser();
+        user.id = randomAsciiOfLength(10);
+        user.name = "first";
+        indexer.index(user);
+        assertThat(user.version, equalTo(1L));
+
+        VersionedUser stale = searcher.getById(VersionedUser.class, user.id);
+        assertThat(stale.version, equalTo(1L));
+        user.name = "second";
+        indexer.index(user);
+        assertThat(user.version, equalTo(2L));
+
+        // stale writes are rejected
+        try {
+            indexer.index(stale);
+            fail("Stale version must conflict");
+        } catch (OsemVersionConflictException e) {
+            assertThat(e.getId(), equalTo(user.id));
+        }
+        try {
+            asyncIndexer.indexAsync(stale).actionGet();
+            fail("Stale version must conflict");
+        } catch (OsemVersionConflictException e) {
+            assertThat(e.getId(), equalTo(user.id));
+        }
+        // version is set before the future completes
+        assertThat(asyncIndexer.indexAsync(user).actionGet().getVersion(), equalTo(3L));
+        assertThat(user.version, equalTo(3L));
+        try {
+            indexer.delete(stale);
+            fail("Stale version must conflict");
+        } catch (OsemVersionConflictException e) {
+            assertThat(e.getType(), equalTo("versioned_user"));
+        }
+
+        // per item conflicts in bulk, versions of written objects are updated
+        VersionedUser other = new VersionedUser();
+        other.id = randomAsciiOfLength(11);
+        BulkResponse response = indexer.bulkIndex(stale, other);
+        List<OsemVersionConflictException> conflicts = OsemVersionConflictException.getConflicts(response);
+        assertThat(conflicts, hasSize(1));
+        assertThat(conflicts.get(0).getItemId(), equalTo(0));
+        assertThat(other.version, equalTo(1L));
+        response = indexer.bulkDelete(stale, other);
+        OsemVersionConflictException conflict = OsemVersionConflictException.getConflict(response.getItems()[0]);
+        assertThat(conflict, notNullValue());
+        assertThat(conflict.getId(), equalTo(user.id));
+        assertThat(OsemVersionConflictException.getConflict(response.getItems()[1]), nullValue());
+        assertThat(stale.version, equalTo(1L));
+
+        // creating an existing document is not a version conflict
+        response = node.client().prepareBulk()
+                .add(node.client().prepareIndex("test", "versioned_user", user.id).setCreate(true).setSource("name", "created"))
+                .get();
+        assertThat(response.getItems()[0].getFailure().getStatus(), equalTo(RestStatus.CONFLICT));
+        assertThat(OsemVersionConflictException.getConflict(response.getItems()[0]), nullValue());
+
+        // version is read from search hits and multi get
+        indexer.refreshIndex();
+        List<VersionedUser> users = searcher.search(VersionedUser.class,
+                searcher.getSearchRequestBuilder(VersionedUser.class).setQuery(QueryBuilders.idsQuery().ids(user.id)));
+        assertThat(users.get(0).version, equalTo(3L));
+        assertThat(searcher.getByIds(VersionedUser.class, Lists.newArrayList(user.id)).get(0).version, equalTo(3L));
+        indexer.delete(user);
+        assertThat(searcher.getById(VersionedUser.class, user.id), nullValue());
+    }
+
+    @Indexable(name = "cached_user", nearCacheSize = 100, nearCacheTtlSeconds = 60)
+    public static class CachedUser {
+
+        @IndexableId
+        @IndexableProperty
+        private String id;
+
+        @IndexableProperty
+        private String name;
+    }
+
+    @Test
+    public void test_near_cache() {
+        ElasticSearchSearcherImpl searcherImpl = (ElasticSearchSearcherImpl) searcher;
+        CachedUser user = new CachedUser();
+        user.id = randomAsciiOfLength(10);
+        user.name = "first";
+        indexer.index(user);
+
+        // first get reads from server, second from near cache
+        searcherImpl.getNearCache().invalidate("cached_user", "test", user.id, null);
+        assertThat(searcher.getById(CachedUser.class, user.id).name, equalTo("first"));
+        assertThat(searcher.getById(CachedUser.class, user.id).name, equalTo("first"));
+        CacheStats stats = searcherImpl.getNearCache().getStats(CachedUser.class);
+        assertThat(stats.missCount(), equalTo(1L));
+        assertThat(stats.hitCount(), equalTo(1L));
+
+        // indexing updates the cached document
+        user.name = "second";
+        indexer.index(user);
+        assertThat(searcher.getById(CachedUser.class, user.id).name, equalTo("second"));
+        assertThat(searcher.getByIds(CachedUser.class, Lists.newArrayList(user.id, "missing")), hasSize(1));
+        assertThat(searcherImpl.getNearCache().getStats(CachedUser.class).hitCount(), equalTo(3L));
+
+        // an older version read can't overwrite a newer write
+        searcherImpl.getNearCache().putRead(CachedUser.class, "test", user.id, null, new BytesArray("{\"id\":\"" + user.id + "\",\"name\":\"first\"}"), 1);
+        assertThat(searcher.getById(CachedUser.class, user.id).name, equalTo("second"));
+
+        // a slow get of a document not cached, which read version 1 before version 2 was indexed, can't overwrite it
+        CachedUser other = new CachedUser();
+        other.id = randomAsciiOfLength(10);
+        other.name = "first";
+        indexer.index(other);
+        searcherImpl.getNearCache().invalidate("cached_user", "test", other.id, null);
+        other.name = "second";
+        indexer.index(other);
+        searcherImpl.getNearCache().putRead(CachedUser.class, "test", other.id, null, new BytesArray("{\"id\":\"" + other.id + "\",\"name\":\"first\"}"), 1);
+        assertThat(searcher.getById(CachedUser.class, other.id).name, equalTo("second"));
+
+        // delete leaves a tombstone
+        indexer.delete(user);
+        assertThat(searcher.getById(CachedUser.class, user.id), nullValue());
+        assertThat(searcherImpl.getNearCache().getStats(CachedUser.class).hitCount(), equalTo(6L));
+
+        // routed documents with the same id are cached separately
+        searcherImpl.getNearCache().putRead(CachedUser.class, "test", user.id, "other", new BytesArray("{\"id\":\"" + user.id + "\",\"name\":\"routed\"}"), 1);
+        assertThat(searcher.getById(CachedUser.class, user.id, "other").name, equalTo("routed"));
+        assertThat(searcher.getById(CachedUser.class, user.id), nullValue());
+
+        // delete by query clears the cache once it finished
+        indexer.deleteByQuery(CachedUser.class, QueryBuilders.matchAllQuery());
+        assertThat(searcherImpl.getNearCache().get(CachedUser.class, "test", user.id, "other"), nullValue());
+    }
+
+    @Test
+    public void test_projection() {
+        Tweet tweet = getRandomTweet();
+        indexer.index(tweet);
+        indexer.refreshIndex();
+
+        // by java property names, heavy properties are not fetched
+        Tweet partialTweet = searcher.getById(SourceProjection.include(Tweet.class, "tweetString", "user.userName"), tweet.getId().toString(), null);
+        assertThat(partialTweet.getTweetString(), equalTo(tweet.getTweetString()));
+        assertThat(partialTweet.getUser().getUserName(), equalTo(tweet.getUser().getUserName()));
+        assertThat(partialTweet.getUser().getDescription(), nullValue());
+        assertThat(partialTweet.getImage(), nullValue());
+        assertThat(partialTweet.getMentionedUserList(), nullValue());
+
+        List<Tweet> searchResult = searcher.search(SourceProjection.exclude(Tweet.class, "image", "mentionedUserList"),
+                searcher.getSearchRequestBuilder(Tweet.class));
+        assertThat(searchResult, hasSize(1));
+        assertThat(searchResult.get(0).getImage(), nullValue());
+        assertThat(searchResult.get(0).getTweetString(), equalTo(tweet.getTweetString()));
+
+        // by DTO
+        List<TweetSummary> summaries = searcher.getByIds(SourceProjection.of(Tweet.class, TweetSummary.class),
+                Lists.newArrayList(tweet.getId().toString(), "missing"));
+        assertThat(summaries, hasSize(1));
+        assertThat(summaries.get(0).getId(), equalTo(tweet.getId()));
+        assertThat(summaries.get(0).getTweetString(), equalTo(tweet.getTweetString()));
+        assertThat(summaries.get(0).getUser(), equalTo(tweet.getUser()));
+    }
+
+    @Test
+    public void test_scroll() {
+        Integer count = randomIntBetween(10, 50);
+        List<Tweet> tweets = new ArrayList<Tweet>();
+        for (int i = 0; i < count; i ++) {
+            tweets.add(getRandomTweet());
+        }
+        indexer.bulkIndex(tweets.toArray());
+        indexer.refreshIndex();
+
+        // iterate all pages
+        ScrollIterator<Tweet> iterator = searcher.scroll(Tweet.class, searcher.getSearchRequestBuilder(Tweet.class), TimeValue.timeValueMinutes(1), randomIntBetween(1, 5));
+        assertThat(iterator.getTotalHits(), equalTo((long) count));
+        Set<Long> ids = new HashSet<Long>();
+        for (Tweet tweet : iterator) {
+            ids.add(tweet.getId());
+        }
+        assertThat(ids, hasSize(count));
+
+        // stop early
+        ScrollIterator<Tweet> partial = searcher.scroll(Tweet.class, QueryBuilders.matchAllQuery());
+        assertThat(partial.hasNext(), equalTo(true));
+        assertThat(partial.next(), notNullValue());
+        partial.close();
+        assertThat(partial.hasNext(), equalTo(false));
+    }
+
+    @Indexable(name = "tracked_comment", dirtyTracking = true)
+    public static class TrackedComment {
+
+        @IndexableId
+        @IndexableProperty
+        private String id;
+
+        @IndexableProperty
+        private String comment;
+    }
+
+    @Test
+    public void test_update() throws InterruptedException {
+        Tweet tweet = getRandomTweet();
+        tweet.setFlagged(false);
+        indexer.index(tweet);
+
+        // only flagged is sent, the local change of tweetString is not
+        String tweetString = tweet.getTweetString();
+        tweet.setFlagged(true);
+        tweet.setTweetString("changed locally");
+        indexer.update(tweet, "flagged");
+        Tweet updatedTweet = searcher.getById(Tweet.class, tweet.getId().toString());
+        assertThat(updatedTweet.getFlagged(), equalTo(true));
+        assertThat(updatedTweet.getTweetString(), equalTo(tweetString));
+
+        // upsert indexes the whole object if not exist
+        Tweet newTweet = getRandomTweet();
+        indexer.upsert(newTweet, "flagged");
+        assertThat(searcher.getById(Tweet.class, newTweet.getId().toString()).getTweetString(), equalTo(newTweet.getTweetString()));
+
+        // dirty tracking only sends changed properties
+        TrackedComment comment = new TrackedComment();
+        comment.id = randomAsciiOfLength(10);
+        comment.comment = "comment";
+        indexer.index(comment);
+        assertThat(indexer.updateChanged(comment), nullValue());
+
+        TrackedComment loadedComment = searcher.getById(TrackedComment.class, comment.id);
+        loadedComment.comment = "updated comment";
+        assertThat(indexer.updateChanged(loadedComment), notNullValue());
+        assertThat(indexer.updateChanged(loadedComment), nullValue());
+
+        loadedComment.comment = "bulk updated comment";
+        BulkResponse bulkResponse = indexer.bulkUpdate(loadedComment);
+        assertThat(bulkResponse.hasFailures(), equalTo(false));
+        assertThat(bulkResponse.getItems().length, equalTo(1));
+        assertThat(searcher.getById(TrackedComment.class, comment.id).comment, equalTo("bulk updated comment"));
+
+        // bulk processor refreshes the snapshot once the update succeeded
+        loadedComment.comment = "processor updated comment";
+        OsemBulkProcessor bulkProcessor = OsemBulkProcessor.builder((ElasticSearchIndexerImpl) indexer, null).build();
+        bulkProcessor.updateChanged(loadedComment);
+        assertThat(bulkProcessor.awaitClose(30, TimeUnit.SECONDS), equalTo(true));
+        assertThat(indexer.updateChanged(loadedComment), nullValue());
+    }
+
+    @Test
+    public void test_rolling_index() {
+        RollingIndexPattern pattern = RollingIndexPattern.forPattern("tweets-yyyy.MM.dd");
+        RollingElasticSearchIndexerImpl rollingIndexer = new RollingElasticSearchIndexerImpl(node.client(), pattern);
+        try {
+            Tweet firstDayTweet = getRandomTweet();
+            firstDayTweet.setTweetDate(new Date(1388534400000L));  // 2014-01-01T00:00:00Z
+            Tweet secondDayTweet = getRandomTweet();
+            secondDayTweet.setTweetDate(new Date(1388620800000L + 3600000L));  // 2014-01-02T01:00:00Z
+
+            // one bulk request, each item goes to its own index created from the template
+            BulkResponse bulkResponse = rollingIndexer.bulkIndex(firstDayTweet, secondDayTweet);
+            assertThat(bulkResponse.hasFailures(), equalTo(false));
+            assertThat(bulkResponse.getItems()[0].getIndex(), equalTo("tweets-2014.01.01"));
+            assertThat(bulkResponse.getItems()[1].getIndex(), equalTo("tweets-2014.01.02"));
+            rollingIndexer.refreshIndex();
+
+            ElasticSearchIndexer dayIndexer = new ElasticSearchIndexerImpl(node.client(), "tweets-2014.01.02");
+            assertThat(dayIndexer.getMapping(Tweet.class), containsString("\"_size\":{\"enabled\":true}"));
+
+            // search the window, indices without data are ignored
+            Date from = new Date(1388534400000L - 86400000L);
+            assertThat(searcher.search(Tweet.class, searcher.getSearchRequestBuilder(pattern, from, new Date(1388534400000L), Tweet.class)), hasSize(1));
+            assertThat(searcher.search(Tweet.class, searcher.getSearchRequestBuilder(pattern, from, new Date(1388620800000L + 86400000L), Tweet.class)), hasSize(2));
+
+            // drop old data by deleting whole indices
+            assertThat(rollingIndexer.deleteIndicesBefore(new Date(1388620800000L)), notNullValue());
+            rollingIndexer.refreshIndex();
+            assertThat(searcher.search(Tweet.class, searcher.getSearchRequestBuilder(pattern, from, new Date(1388620800000L + 86400000L), Tweet.class)), hasSize(1));
+
+            // only indices of the pattern are deleted, not others sharing the prefix
+            node.client().admin().indices().prepareCreate("tweets-archive").get();
+            assertThat(rollingIndexer.deleteIndex(), notNullValue());
+            assertThat(rollingIndexer.indexExist(), equalTo(false));
+            assertThat(node.client().admin().indices().prepareExists("tweets-archive").get().isExists(), equalTo(true));
+
+            // index name of a rolling indexer is its pattern
+            rollingIndexer.setIndexName("tweets-yyyy.MM");
+            assertThat(rollingIndexer.getPattern().getIndexName(new Date(1388534400000L)), equalTo("tweets-2014.01"));
+        } finally {
+            rollingIndexer.deleteIndex();
+            rollingIndexer.deleteTemplate(Tweet.class);
+            node.client().admin().indices().prepareDelete("tweets-archive").get();
+        }
+    }
+
     @Test
     public void test_parent() {
         // create mapping
@@ -172,6 +717,21 @@ public class ElasticSearchOsemIntegrationTest extends AbstractOsemTest {
         TweetComment comment = searcher.getById(TweetComment.class, commentList.get(0).getId().toString(), commentList.get(0).getTweetId().toString());
         assertThat(comment.getId(), equalTo(comment.getId()));
 
+        // test get by keys, routed by parent, in input order with misses in several chunks
+        ElasticSearchSearcherImpl chunkedSearcher = new ElasticSearchSearcherImpl(node.client(), "test");
+        chunkedSearcher.setMultiGetChunkSize(3);
+        List<DocumentKey> keys = new ArrayList<DocumentKey>();
+        keys.add(new DocumentKey("missing", tweet.getId().toString()));
+        for (TweetComment tweetComment : commentList) {
+            keys.add(chunkedSearcher.getObjectProcessor().getDocumentKey(tweetComment));
+        }
+        List<TweetComment> commentsByKeys = chunkedSearcher.getByKeys(TweetComment.class, keys);
+        assertThat(commentsByKeys, hasSize(commentCount + 1));
+        assertThat(commentsByKeys.get(0), nullValue());
+        for (int i = 0; i < commentCount; i ++) {
+            assertThat(commentsByKeys.get(i + 1).getId(), equalTo(commentList.get(i).getId()));
+        }
+
 
         // test search
         indexer.refreshIndex();
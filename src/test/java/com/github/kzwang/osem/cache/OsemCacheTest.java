@@ -0,0 +1,71 @@
+package com.github.kzwang.osem.cache;
+
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class OsemCacheTest {
+
+    @Test
+    public void test_load_once_under_contention() throws InterruptedException {
+        final OsemCache osemCache = OsemCache.getInstance();
+        final Object key = new Object();
+        final AtomicInteger loadCount = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final int threadCount = 16;
+        final String[] results = new String[threadCount];
+
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    results[index] = osemCache.load(CacheType.CLASS_MODEL, key, new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            loadCount.incrementAndGet();
+                            Thread.sleep(10);
+                            return "loaded";
+                        }
+                    });
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(loadCount.get(), equalTo(1));
+        for (String result : results) {
+            assertThat(result, equalTo("loaded"));
+        }
+        assertThat(osemCache.isExist(CacheType.CLASS_MODEL, key), equalTo(true));
+
+        osemCache.removeCache(CacheType.CLASS_MODEL, key);
+        assertThat(osemCache.getCache(CacheType.CLASS_MODEL, key), nullValue());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_load_failure_is_rethrown() {
+        OsemCache.getInstance().load(CacheType.CLASS_MODEL, new Object(), new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw new IllegalStateException("failed");
+            }
+        });
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.kzwang.osem.model;
+
+import com.github.kzwang.osem.annotations.IndexableComponent;
+import com.github.kzwang.osem.annotations.IndexableProperty;
+
+/**
+ * Projection of {@link Tweet} for list pages
+ */
+public class TweetSummary {
+
+    @IndexableProperty
+    private Long id;
+
+    @IndexableProperty
+    private String tweetString;
+
+    @IndexableComponent
+    private User user;
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTweetString() {
+        return tweetString;
+    }
+
+    public User getUser() {
+        return user;
+    }
+}
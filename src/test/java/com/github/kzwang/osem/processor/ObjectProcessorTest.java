@@ -4,13 +4,19 @@ package com.github.kzwang.osem.processor;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.kzwang.osem.exception.ElasticSearchOsemException;
 import com.github.kzwang.osem.model.TweetComment;
+import org.elasticsearch.common.base.Charsets;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.collect.Sets;
 import org.elasticsearch.common.joda.Joda;
 import org.elasticsearch.common.joda.time.DateTime;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import com.github.kzwang.osem.model.Tweet;
 import com.github.kzwang.osem.test.AbstractOsemTest;
+import com.github.kzwang.osem.utils.FieldPath;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -51,6 +57,40 @@ public class ObjectProcessorTest extends AbstractOsemTest {
         assertThat(((List<String>) tweetMap.get("specialDates")).get(0), equalTo(Joda.forPattern("basic_date_time_no_millis").printer().print(new DateTime(tweet.getSpecialDates().get(0)))));
     }
 
+    private static class NoIdObject {
+        private String name;
+    }
+
+    @Test(expected = ElasticSearchOsemException.class)
+    public void test_get_id_without_id_field() {
+        objectProcessor.getIdValue(new NoIdObject());
+    }
+
+    @Test
+    public void test_process_object_bytes() {
+        Tweet tweet = getRandomTweet();
+        BytesReference tweetBytes = objectProcessor.toJsonBytes(tweet);
+        assertThat(tweetBytes.toUtf8(), equalTo(objectProcessor.toJsonString(tweet)));
+
+        // buffer is reused, previous result must not be changed
+        Tweet anotherTweet = getRandomTweet();
+        String tweetJson = tweetBytes.toUtf8();
+        BytesReference anotherTweetBytes = objectProcessor.toJsonBytes(anotherTweet);
+        assertThat(tweetBytes.toUtf8(), equalTo(tweetJson));
+        assertThat(anotherTweetBytes.toUtf8(), equalTo(objectProcessor.toJsonString(anotherTweet)));
+    }
+
+    @Test
+    public void test_process_object_from_bytes() {
+        Tweet tweet = getRandomTweet();
+        BytesReference tweetBytes = objectProcessor.toJsonBytes(tweet);
+        checkTweetEquals(objectProcessor.fromJsonBytes(tweetBytes, Tweet.class), tweet);
+
+        // bytes with offset
+        BytesArray padded = new BytesArray(("   " + tweetBytes.toUtf8() + "   ").getBytes(Charsets.UTF_8));
+        checkTweetEquals(objectProcessor.fromJsonBytes(padded.slice(3, tweetBytes.length()), Tweet.class), tweet);
+    }
+
     @Test
     public void test_custom_serializer() {
         // test serialize null value
@@ -68,6 +108,40 @@ public class ObjectProcessorTest extends AbstractOsemTest {
 
     }
 
+    @Test
+    public void test_afterburner() {
+        ObjectProcessor afterburnerProcessor = new ObjectProcessor(true);
+        Tweet tweet = getRandomTweet();
+
+        // same json as reflection
+        String tweetJson = afterburnerProcessor.toJsonString(tweet);
+        assertThat(jsonToMap(tweetJson), equalTo(jsonToMap(objectProcessor.toJsonString(tweet))));
+        checkTweetEquals(afterburnerProcessor.fromJsonString(tweetJson, Tweet.class), tweet);
+
+        // custom serializer still used for null value
+        tweet.setImage(null);
+        assertThat((String) jsonToMap(afterburnerProcessor.toJsonString(tweet)).get("image"), equalTo("NULLSTR"));
+    }
+
+    @Test
+    public void test_shared_context() {
+        ObjectProcessor sharedProcessor = OsemContext.getInstance().getObjectProcessor();
+        assertThat(OsemContext.getInstance().getObjectProcessor(), sameInstance(sharedProcessor));
+        assertThat(sharedProcessor.getReader(Tweet.class), sameInstance(sharedProcessor.getReader(Tweet.class)));
+        assertThat(sharedProcessor.getWriter(Tweet.class), sameInstance(sharedProcessor.getWriter(Tweet.class)));
+        assertThat(sharedProcessor.toJsonString(null), equalTo("null"));
+    }
+
+    @Test
+    public void test_partial_json() {
+        Tweet tweet = getRandomTweet();
+        tweet.setImage(null);
+        Map<String, Object> partial = jsonToMap(objectProcessor.toPartialJsonBytes(tweet, Sets.newHashSet("flagged", "user", "image")).toUtf8());
+        assertThat(partial.keySet(), containsInAnyOrder("flagged", "user", "image"));
+        assertThat(((Map) partial.get("user")).get("userName"), equalTo((Object) tweet.getUser().getUserName()));
+        assertThat((String) partial.get("image"), equalTo("NULLSTR"));
+    }
+
     @Test
     public void test_get_id(){
         Tweet tweet = getRandomTweet();
@@ -83,6 +157,16 @@ public class ObjectProcessorTest extends AbstractOsemTest {
         assertThat(parentId, equalTo(tweetComment.getTweetId().toString()));
     }
 
+    @Test
+    public void test_field_path(){
+        Tweet tweet = getRandomTweet();
+        FieldPath path = FieldPath.compile(Tweet.class, "user.userName");
+        assertThat((String) path.getValue(tweet), equalTo(tweet.getUser().getUserName()));
+
+        tweet.setUser(null);
+        assertThat(path.getValue(tweet), nullValue());
+    }
+
 
     private Map<String, Object> jsonToMap(String json) {
         JsonFactory factory = new JsonFactory();
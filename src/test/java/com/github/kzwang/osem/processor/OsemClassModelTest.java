@@ -0,0 +1,47 @@
+package com.github.kzwang.osem.processor;
+
+
+import com.github.kzwang.osem.converter.DateSerializer;
+import com.github.kzwang.osem.model.Tweet;
+import com.github.kzwang.osem.model.TweetComment;
+import com.github.kzwang.osem.model.User;
+import com.github.kzwang.osem.serializer.ImageSerializer;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+
+public class OsemClassModelTest {
+
+    @Test
+    public void test_class_model() throws NoSuchFieldException, NoSuchMethodException {
+        OsemClassModel tweetModel = OsemClassModel.of(Tweet.class);
+        assertThat(OsemClassModel.of(Tweet.class), sameInstance(tweetModel));
+        assertThat(tweetModel.isIndexable(), equalTo(true));
+        assertThat(tweetModel.getIndexTypeName(), equalTo("tweetIndex"));
+        assertThat(tweetModel.getIdField(), equalTo(Tweet.class.getDeclaredField("id")));
+        assertThat(tweetModel.getParentPath(), nullValue());
+
+        OsemPropertyModel mentionedUsers = tweetModel.getProperty(Tweet.class.getDeclaredField("mentionedUserList"));
+        assertThat(mentionedUsers.getName(), equalTo("mentionedUsers"));
+        assertThat(mentionedUsers.isCollection(), equalTo(true));
+        assertThat(mentionedUsers.getElementType(), equalTo((Class) User.class));
+
+        OsemPropertyModel specialDates = tweetModel.getProperty(Tweet.class.getDeclaredField("specialDates"));
+        assertThat(specialDates.getElementType(), equalTo((Class) Date.class));
+        assertThat(specialDates.getSerializer(), equalTo((Class) DateSerializer.class));
+
+        OsemPropertyModel image = tweetModel.getProperty(Tweet.class.getDeclaredField("image"));
+        assertThat(image.getCustomSerializer(), equalTo((Class) ImageSerializer.class));
+
+        // getters without OSEM annotations are not properties
+        assertThat(tweetModel.getProperty(Tweet.class.getMethod("getImage")), nullValue());
+
+        OsemClassModel tweetCommentModel = OsemClassModel.of(TweetComment.class);
+        assertThat(tweetCommentModel.getParentPath().getPath(), equalTo("tweetId"));
+        assertThat(tweetCommentModel.getProperties().size(), equalTo(3));
+    }
+}
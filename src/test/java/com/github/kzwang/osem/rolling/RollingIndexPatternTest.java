@@ -0,0 +1,59 @@
+package com.github.kzwang.osem.rolling;
+
+
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.common.joda.time.DateTime;
+import org.elasticsearch.common.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class RollingIndexPatternTest {
+
+    private static long utc(int year, int month, int day) {
+        return new DateTime(year, month, day, 12, 0, DateTimeZone.UTC).getMillis();
+    }
+
+    @Test
+    public void test_for_pattern() {
+        RollingIndexPattern pattern = RollingIndexPattern.forPattern("logs-yyyy-MM-dd");
+        assertThat(pattern.getPrefix(), equalTo("logs-"));
+        assertThat(pattern.getDatePattern(), equalTo("yyyy-MM-dd"));
+        assertThat(pattern.getInterval(), equalTo(RollingIndexPattern.Interval.DAY));
+        assertThat(pattern.getIndexName(utc(2014, 1, 31)), equalTo("logs-2014-01-31"));
+
+        pattern = RollingIndexPattern.forPattern("my-tweets-yyyy.MM");
+        assertThat(pattern.getPrefix(), equalTo("my-tweets-"));
+        assertThat(pattern.getInterval(), equalTo(RollingIndexPattern.Interval.MONTH));
+
+        pattern = RollingIndexPattern.forPattern("events-yyyy.MM.dd'T'HH");
+        assertThat(pattern.getPrefix(), equalTo("events-"));
+        assertThat(pattern.getInterval(), equalTo(RollingIndexPattern.Interval.HOUR));
+        assertThat(pattern.getIndexName(utc(2014, 1, 31)), equalTo("events-2014.01.31T12"));
+    }
+
+    @Test
+    public void test_weekly_around_new_year() {
+        RollingIndexPattern pattern = RollingIndexPattern.weekly("logs-");
+        // 2014-12-29 to 2015-01-04 is week 1 of week year 2015
+        assertThat(pattern.getIndexName(utc(2014, 12, 30)), equalTo("logs-2015.01"));
+        assertThat(pattern.getIndexName(utc(2015, 1, 2)), equalTo("logs-2015.01"));
+        assertThat(pattern.getIndexNames(new DateTime(utc(2014, 12, 30)).toDate(), new DateTime(utc(2015, 1, 6)).toDate()),
+                arrayContaining("logs-2015.01", "logs-2015.02"));
+        assertThat(pattern.getStart("logs-2015.01"), equalTo(new DateTime(2014, 12, 29, 0, 0, DateTimeZone.UTC).toDate()));
+    }
+
+    @Test(expected = ElasticsearchIllegalArgumentException.class)
+    public void test_weekly_requires_week_year() {
+        RollingIndexPattern.forPattern("logs-yyyy.ww");
+    }
+
+    @Test
+    public void test_matches() {
+        RollingIndexPattern pattern = RollingIndexPattern.forPattern("tweets-yyyy.MM.dd");
+        assertThat(pattern.matches("tweets-2014.01.31"), equalTo(true));
+        assertThat(pattern.matches("tweets-archive-2014.01.31"), equalTo(false));
+        assertThat(pattern.matches("tweets-2014.01"), equalTo(false));
+    }
+}